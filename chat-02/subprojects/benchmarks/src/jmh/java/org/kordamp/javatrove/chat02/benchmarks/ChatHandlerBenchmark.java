@@ -0,0 +1,252 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat02.benchmarks;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.kordamp.javatrove.chat02.grpc.ChatGrpc;
+import org.kordamp.javatrove.chat02.grpc.Login;
+import org.kordamp.javatrove.chat02.grpc.Logout;
+import org.kordamp.javatrove.chat02.grpc.Message;
+import org.kordamp.javatrove.chat02.grpc.Response;
+import org.kordamp.javatrove.chat02.server.ChatHandler;
+import org.kordamp.javatrove.chat02.server.ServerModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures {@code ChatHandlerImpl} with a number of attached subscriber streams.
+ * Running every benchmark over both the in-process and the Netty transport
+ * separates handler overhead from transport overhead.
+ *
+ * @author Andres Almiray
+ */
+public class ChatHandlerBenchmark {
+    public enum Transport {
+        INPROCESS,
+        NETTY
+    }
+
+    @State(Scope.Benchmark)
+    public static class ChatState {
+        @Param({"INPROCESS", "NETTY"})
+        public Transport transport;
+
+        @Param({"10", "100", "1000"})
+        public int subscribers;
+
+        private Injector injector;
+        private Server server;
+        private ManagedChannel channel;
+        private ChatGrpc.ChatStub asyncStub;
+        private ChatGrpc.ChatBlockingStub blockingStub;
+        private final AtomicLong ids = new AtomicLong();
+        private volatile CountDownLatch probeDeliveries = new CountDownLatch(0);
+        private volatile CountDownLatch allDeliveries = new CountDownLatch(0);
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            injector = Guice.createInjector(new ServerModule());
+            ChatHandler chatHandler = injector.getInstance(ChatHandler.class);
+
+            switch (transport) {
+                case INPROCESS:
+                    String name = InProcessServerBuilder.generateName();
+                    server = InProcessServerBuilder.forName(name)
+                        .addService(chatHandler)
+                        .directExecutor()
+                        .build()
+                        .start();
+                    channel = InProcessChannelBuilder.forName(name)
+                        .directExecutor()
+                        .build();
+                    break;
+                case NETTY:
+                    server = NettyServerBuilder.forAddress(new InetSocketAddress("localhost", 0))
+                        .addService(chatHandler)
+                        .directExecutor()
+                        .build()
+                        .start();
+                    channel = NettyChannelBuilder.forAddress("localhost", server.getPort())
+                        .usePlaintext()
+                        .directExecutor()
+                        .build();
+                    break;
+            }
+
+            asyncStub = ChatGrpc.newStub(channel);
+            blockingStub = ChatGrpc.newBlockingStub(channel);
+
+            CountDownLatch attached = new CountDownLatch(subscribers);
+            for (int i = 0; i < subscribers; i++) {
+                asyncStub.login(login(nextId()), new SubscriberObserver(i == 0, attached));
+            }
+            attached.await();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+            server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+            injector.getInstance(ScheduledExecutorService.class).shutdownNow();
+        }
+
+        private String nextId() {
+            return "user-" + ids.incrementAndGet();
+        }
+
+        private Login login(String id) {
+            return Login.newBuilder()
+                .setId(id)
+                .setName(id)
+                .build();
+        }
+
+        private void send() {
+            blockingStub.send(Message.newBuilder()
+                .setMessage("benchmark> hello")
+                .build());
+        }
+
+        private class SubscriberObserver implements StreamObserver<Response> {
+            private final boolean probe;
+            private final CountDownLatch attached;
+            private boolean attachedSeen;
+
+            private SubscriberObserver(boolean probe, CountDownLatch attached) {
+                this.probe = probe;
+                this.attached = attached;
+            }
+
+            @Override
+            public void onNext(Response value) {
+                if (!attachedSeen) {
+                    attachedSeen = true;
+                    attached.countDown();
+                }
+                if (value.getType() == Response.Type.BATCH) {
+                    value.getBatch().getResponsesList().forEach(this::delivered);
+                } else {
+                    delivered(value);
+                }
+            }
+
+            private void delivered(Response value) {
+                if (value.getType() == Response.Type.MESSAGE) {
+                    allDeliveries.countDown();
+                    if (probe) {
+                        probeDeliveries.countDown();
+                    }
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+
+            }
+
+            @Override
+            public void onCompleted() {
+
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class LoginState {
+        private String id;
+
+        @TearDown(Level.Invocation)
+        public void logout(ChatState chat) {
+            chat.blockingStub.logout(Logout.newBuilder()
+                .setId(id)
+                .setName(id)
+                .build());
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Object login(ChatState chat, LoginState state) throws InterruptedException {
+        state.id = chat.nextId();
+        CountDownLatch loggedIn = new CountDownLatch(1);
+        chat.asyncStub.login(chat.login(state.id), new StreamObserver<Response>() {
+            @Override
+            public void onNext(Response value) {
+                loggedIn.countDown();
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                loggedIn.countDown();
+            }
+
+            @Override
+            public void onCompleted() {
+
+            }
+        });
+        loggedIn.await();
+        return loggedIn;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Object sendToDelivery(ChatState chat) throws InterruptedException {
+        CountDownLatch delivered = new CountDownLatch(1);
+        chat.probeDeliveries = delivered;
+        chat.send();
+        delivered.await();
+        return delivered;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public Object fanOut(ChatState chat) throws InterruptedException {
+        CountDownLatch delivered = new CountDownLatch(chat.subscribers);
+        chat.allDeliveries = delivered;
+        chat.send();
+        delivered.await();
+        return delivered;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat02.benchmarks;
+
+import com.google.inject.Guice;
+import org.kordamp.javatrove.chat02.grpc.Response;
+import org.kordamp.javatrove.chat02.server.MessageIndex;
+import org.kordamp.javatrove.chat02.server.ServerModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.kordamp.javatrove.chat02.ChatUtil.DEFAULT_ROOM;
+import static org.kordamp.javatrove.chat02.ChatUtil.SEARCH_LIMIT;
+
+/**
+ * Measures lookups and updates of the message index filled with a million messages.
+ * Message words are drawn from a Zipf-like distribution so that queries hit both
+ * very long and very short posting lists.
+ *
+ * @author Andres Almiray
+ */
+public class MessageIndexBenchmark {
+    private static final int MESSAGES = 1_000_000;
+    private static final int VOCABULARY = 10_000;
+    private static final int WORDS_PER_MESSAGE = 8;
+
+    @State(Scope.Benchmark)
+    public static class IndexState {
+        @Param({"word1", "word10 word20", "word100 word9000"})
+        public String query;
+
+        private MessageIndex index;
+        private final Random random = new Random(42);
+        private long sequence;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            index = Guice.createInjector(new ServerModule()).getInstance(MessageIndex.class);
+            for (int i = 0; i < MESSAGES; i++) {
+                index.add(DEFAULT_ROOM, nextMessage());
+            }
+        }
+
+        private Response nextMessage() {
+            StringBuilder message = new StringBuilder("user").append(random.nextInt(100)).append(">");
+            for (int w = 0; w < WORDS_PER_MESSAGE; w++) {
+                int rank = (int) Math.pow(VOCABULARY, random.nextDouble());
+                message.append(" word").append(rank);
+            }
+            return Response.newBuilder()
+                .setType(Response.Type.MESSAGE)
+                .setPayload(message.toString())
+                .setSequence(++sequence)
+                .build();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Response> search(IndexState state) {
+        return state.index.search(DEFAULT_ROOM, state.query, SEARCH_LIMIT);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void add(IndexState state) {
+        state.index.add(DEFAULT_ROOM, state.nextMessage());
+    }
+}
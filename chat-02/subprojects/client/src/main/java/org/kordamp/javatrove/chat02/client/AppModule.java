@@ -22,9 +22,11 @@ import org.jdeferred.DeferredManager;
 import org.kordamp.javatrove.chat02.client.controller.AppController;
 import org.kordamp.javatrove.chat02.client.impl.ChatClientImpl;
 import org.kordamp.javatrove.chat02.client.impl.ClientCommandDispatcherImpl;
+import org.kordamp.javatrove.chat02.client.impl.ClientIndicatorCommandHandler;
 import org.kordamp.javatrove.chat02.client.impl.ClientLoginCommandHandler;
 import org.kordamp.javatrove.chat02.client.impl.ClientLogoutCommandHandler;
 import org.kordamp.javatrove.chat02.client.impl.ClientMessageCommandHandler;
+import org.kordamp.javatrove.chat02.client.impl.ClientResyncCommandHandler;
 import org.kordamp.javatrove.chat02.client.impl.DeferredManagerProvider;
 import org.kordamp.javatrove.chat02.client.model.AppModel;
 import org.kordamp.javatrove.chat02.client.util.ApplicationEventBus;
@@ -55,6 +57,8 @@ public class AppModule extends ExtAnnotationsModule {
         bindLoginCommandHandler();
         bindLogoutCommandHandler();
         bindMessageCommandHandler();
+        bindResyncCommandHandler();
+        bindIndicatorCommandHandler();
         bindDeferredManager();
         bindApplicationEventBus();
         bindApplicationEventHandler();
@@ -100,6 +104,20 @@ public class AppModule extends ExtAnnotationsModule {
             .in(Singleton.class);
     }
 
+    protected void bindResyncCommandHandler() {
+        bind(ClientCommandHandler.class)
+            .annotatedWith(named(ClientResyncCommandHandler.NAME))
+            .to(ClientResyncCommandHandler.class)
+            .in(Singleton.class);
+    }
+
+    protected void bindIndicatorCommandHandler() {
+        bind(ClientCommandHandler.class)
+            .annotatedWith(named(ClientIndicatorCommandHandler.NAME))
+            .to(ClientIndicatorCommandHandler.class)
+            .in(Singleton.class);
+    }
+
     protected void bindDeferredManager() {
         bind(DeferredManager.class)
             .toProvider(DeferredManagerProvider.class)
@@ -18,13 +18,23 @@
  */
 package org.kordamp.javatrove.chat02.client;
 
+import java.util.List;
+
 /**
  * @author Andres Almiray
  */
 public interface ChatClient {
     void login(String host, int port, String name);
 
+    void login(String host, int port, String name, String room);
+
     void logout(String name);
 
     void send(String name, String message);
+
+    void typing(String name, boolean typing);
+
+    void presence(String name, String state);
+
+    List<String> search(String query, int limit);
 }
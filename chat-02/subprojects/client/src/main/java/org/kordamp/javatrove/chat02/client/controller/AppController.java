@@ -28,6 +28,9 @@ import org.kordamp.javatrove.chat02.client.util.ThrowableEvent;
 import javax.inject.Inject;
 import java.util.Optional;
 
+import static org.kordamp.javatrove.chat02.ChatUtil.AWAY_STATE;
+import static org.kordamp.javatrove.chat02.ChatUtil.ONLINE_STATE;
+
 /**
  * @author Andres Almiray
  */
@@ -37,16 +40,23 @@ public class AppController {
     @Inject private ApplicationEventBus eventBus;
     @Inject private Injector injector;
 
+    private boolean typing;
+    private String presence;
+
     public void login() {
+        presence = ONLINE_STATE;
         deferredManager.when(() -> {
             ChatClient client = injector.getInstance(ChatClient.class);
             client.login(model.getServer(), model.getPort(), model.getName());
             model.setClient(client);
+            client.presence(model.getName(), ONLINE_STATE);
         }).fail(this::handleException)
             .then((Void result) -> model.setConnected(true));
     }
 
     public void logout() {
+        typing = false;
+        presence = null;
         deferredManager.when(() -> {
             Optional<ChatClient> client = model.getClient();
             model.setClient(null);
@@ -63,6 +73,31 @@ public class AppController {
         }).fail(this::handleException);
     }
 
+    /**
+     * Only state changes are sent, never individual keystrokes.
+     */
+    public void typing(boolean typing) {
+        if (this.typing == typing) {
+            return;
+        }
+        this.typing = typing;
+        deferredManager.when(() -> model.getClient().ifPresent(c -> c.typing(model.getName(), typing)))
+            .fail(this::handleException);
+    }
+
+    /**
+     * Follows the focus of the application window; only state changes are sent.
+     */
+    public void presence(boolean focused) {
+        String state = focused ? ONLINE_STATE : AWAY_STATE;
+        if (state.equals(presence)) {
+            return;
+        }
+        presence = state;
+        deferredManager.when(() -> model.getClient().ifPresent(c -> c.presence(model.getName(), state)))
+            .fail(this::handleException);
+    }
+
     private void handleException(Throwable throwable) {
         model.cleanup(false);
         eventBus.publishAsync(new ThrowableEvent(throwable));
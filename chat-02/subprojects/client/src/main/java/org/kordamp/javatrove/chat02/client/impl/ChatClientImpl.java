@@ -21,6 +21,9 @@ package org.kordamp.javatrove.chat02.client.impl;
 import com.google.protobuf.Empty;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
 import io.grpc.stub.StreamObserver;
 import org.kordamp.javatrove.chat02.Command;
 import org.kordamp.javatrove.chat02.client.ChatClient;
@@ -29,19 +32,32 @@ import org.kordamp.javatrove.chat02.client.util.ApplicationEventBus;
 import org.kordamp.javatrove.chat02.client.util.DisconnectEvent;
 import org.kordamp.javatrove.chat02.client.util.ThrowableEvent;
 import org.kordamp.javatrove.chat02.grpc.ChatGrpc;
+import org.kordamp.javatrove.chat02.grpc.Indicator;
 import org.kordamp.javatrove.chat02.grpc.Login;
 import org.kordamp.javatrove.chat02.grpc.Logout;
 import org.kordamp.javatrove.chat02.grpc.Message;
 import org.kordamp.javatrove.chat02.grpc.Response;
+import org.kordamp.javatrove.chat02.grpc.SearchRequest;
 
 import javax.inject.Inject;
 import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
+import static java.util.Collections.singletonList;
+import static org.kordamp.javatrove.chat02.ChatUtil.DEFAULT_ROOM;
+import static org.kordamp.javatrove.chat02.ChatUtil.IDLE_STATE;
 import static org.kordamp.javatrove.chat02.ChatUtil.NAME_SEPARATOR;
+import static org.kordamp.javatrove.chat02.ChatUtil.TYPING_STATE;
 import static org.kordamp.javatrove.chat02.ChatUtil.loginCommand;
 import static org.kordamp.javatrove.chat02.ChatUtil.logoutCommand;
 import static org.kordamp.javatrove.chat02.ChatUtil.messageCommand;
+import static org.kordamp.javatrove.chat02.ChatUtil.presenceCommand;
+import static org.kordamp.javatrove.chat02.ChatUtil.resyncCommand;
 import static org.kordamp.javatrove.chat02.ChatUtil.toSHA1;
+import static org.kordamp.javatrove.chat02.ChatUtil.typingCommand;
 
 /**
  * @author Andres Almiray
@@ -50,43 +66,151 @@ public class ChatClientImpl implements ChatClient {
     @Inject private ClientCommandDispatcher clientDispatcher;
     @Inject private ApplicationEventBus eventBus;
 
+    private static final int MAX_REDIRECTS = 3;
+    private static final long JOIN_TIMEOUT_SECONDS = 10;
+
     private String id;
-    private ManagedChannel channel;
-    private ChatGrpc.ChatBlockingStub blockingStub;
-    private ChatGrpc.ChatStub asyncStub;
+    private String name;
+    private String room;
+    private volatile ManagedChannel channel;
+    private volatile ChatGrpc.ChatBlockingStub blockingStub;
+    private volatile ChatGrpc.ChatStub asyncStub;
+    private volatile long lastSeenSequence;
+    private volatile boolean loggedIn;
+    private final CountDownLatch joined = new CountDownLatch(1);
+    private int redirects;
 
     @Override
     public void login(String host, int port, String name) {
+        login(host, port, name, DEFAULT_ROOM);
+    }
+
+    @Override
+    public void login(String host, int port, String name, String room) {
+        connect(host, port);
+
+        this.name = name;
+        this.room = room;
+        id = toSHA1(InetAddress.getLoopbackAddress().getHostName() + "-" + System.nanoTime());
+        loggedIn = true;
+        subscribe(asyncStub);
+
+        try {
+            joined.await(JOIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void connect(String host, int port) {
         channel = ManagedChannelBuilder.forAddress(host, port)
-            .usePlaintext(true)
+            .usePlaintext()
             .build();
 
         blockingStub = ChatGrpc.newBlockingStub(channel);
         asyncStub = ChatGrpc.newStub(channel);
+    }
 
-        id = toSHA1(InetAddress.getLoopbackAddress().getHostName() + "-" + System.nanoTime());
-        asyncStub.login(Login.newBuilder()
+    private void redirect(String address) {
+        if (++redirects > MAX_REDIRECTS) {
+            joined.countDown();
+            eventBus.publishAsync(new ThrowableEvent(new IllegalStateException("Too many redirects while joining room " + room)));
+            return;
+        }
+
+        int separator = address.lastIndexOf(':');
+        channel.shutdown();
+        connect(address.substring(0, separator), Integer.parseInt(address.substring(separator + 1)));
+        // sequence numbers are assigned by the owning node
+        lastSeenSequence = 0;
+        subscribe(asyncStub);
+    }
+
+    private void subscribe(ChatGrpc.ChatStub stub) {
+        stub.login(Login.newBuilder()
                 .setName(name)
                 .setId(id)
+                .setRoom(room)
+                .setLastSeenSeq(lastSeenSequence)
                 .build(),
-            new StreamObserverAdapter<Response>() {
+            new ClientResponseObserver<Login, Response>() {
+                private ClientCallStreamObserver<Login> call;
+                private boolean missed;
+
+                @Override
+                public void beforeStart(ClientCallStreamObserver<Login> call) {
+                    this.call = call;
+                }
+
                 @Override
                 public void onNext(Response value) {
-                    clientDispatcher.dispatch(asCommand(value));
+                    if (missed) {
+                        return;
+                    }
+                    if (value.getType() == Response.Type.REDIRECT) {
+                        redirect(value.getPayload());
+                        return;
+                    }
+
+                    joined.countDown();
+                    List<Response> responses = value.getType() == Response.Type.BATCH ? value.getBatch().getResponsesList() : singletonList(value);
+                    for (Response response : responses) {
+                        if (!handle(response)) {
+                            // resubscribed to once the call is cancelled
+                            missed = true;
+                            call.cancel("Missed responses after " + lastSeenSequence, null);
+                            return;
+                        }
+                    }
                 }
 
                 @Override
                 public void onError(Throwable throwable) {
-                    eventBus.publishAsync(new ThrowableEvent(throwable));
+                    joined.countDown();
+                    Status.Code code = Status.fromThrowable(throwable).getCode();
+                    if (missed && loggedIn) {
+                        subscribe(asyncStub);
+                    } else if (loggedIn && lastSeenSequence > 0 && (code == Status.Code.UNAVAILABLE || code == Status.Code.RESOURCE_EXHAUSTED)) {
+                        // the stream dropped, or the server gave up on us; wait for the channel to reconnect and pick up where we left off
+                        subscribe(asyncStub.withWaitForReady());
+                    } else {
+                        eventBus.publishAsync(new ThrowableEvent(throwable));
+                    }
+                }
+
+                @Override
+                public void onCompleted() {
+
                 }
             });
     }
 
+    /**
+     * @return {@code false} if responses are missing before this one
+     */
+    private boolean handle(Response value) {
+        if (value.getType() == Response.Type.INDICATOR) {
+            clientDispatcher.dispatch(asCommand(value.getIndicator()));
+        } else if (value.getType() == Response.Type.RESYNC) {
+            lastSeenSequence = value.getSequence();
+            clientDispatcher.dispatch(resyncCommand());
+        } else if (value.getSequence() > lastSeenSequence) {
+            if (lastSeenSequence > 0 && value.getSequence() != lastSeenSequence + 1) {
+                return false;
+            }
+            lastSeenSequence = value.getSequence();
+            clientDispatcher.dispatch(asCommand(value));
+        }
+        return true;
+    }
+
     @Override
     public void logout(String name) {
+        loggedIn = false;
         blockingStub.logout(Logout.newBuilder()
             .setName(name)
             .setId(id)
+            .setRoom(room)
             .build());
         channel.shutdownNow();
     }
@@ -95,6 +219,7 @@ public class ChatClientImpl implements ChatClient {
     public void send(String name, String message) {
         asyncStub.send(Message.newBuilder()
             .setMessage(name + NAME_SEPARATOR + " " + message)
+            .setRoom(room)
             .build(), new StreamObserverAdapter<Empty>() {
             @Override
             public void onError(Throwable throwable) {
@@ -104,6 +229,48 @@ public class ChatClientImpl implements ChatClient {
         });
     }
 
+    @Override
+    public void typing(String name, boolean typing) {
+        indicate(name, Indicator.Kind.TYPING, typing ? TYPING_STATE : IDLE_STATE);
+    }
+
+    @Override
+    public void presence(String name, String state) {
+        indicate(name, Indicator.Kind.PRESENCE, state);
+    }
+
+    @Override
+    public List<String> search(String query, int limit) {
+        List<String> messages = new ArrayList<>();
+        blockingStub.search(SearchRequest.newBuilder()
+            .setQuery(query)
+            .setRoom(room)
+            .setLimit(limit)
+            .build())
+            .forEachRemaining(response -> messages.add(response.getPayload()));
+        return messages;
+    }
+
+    private void indicate(String name, Indicator.Kind kind, String state) {
+        asyncStub.indicate(Indicator.newBuilder()
+            .setName(name)
+            .setId(id)
+            .setRoom(room)
+            .setKind(kind)
+            .setState(state)
+            .build(), new StreamObserverAdapter<>());
+    }
+
+    private Command asCommand(Indicator value) {
+        switch (value.getKind()) {
+            case TYPING:
+                return typingCommand(value.getName(), value.getState());
+            case PRESENCE:
+                return presenceCommand(value.getName(), value.getState());
+        }
+        return null;
+    }
+
     private Command asCommand(Response value) {
         switch (value.getType()) {
             case LOGIN:
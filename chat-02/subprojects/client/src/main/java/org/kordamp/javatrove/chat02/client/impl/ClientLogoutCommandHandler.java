@@ -18,6 +18,7 @@
  */
 package org.kordamp.javatrove.chat02.client.impl;
 
+import javafx.application.Platform;
 import org.kordamp.javatrove.chat02.Command;
 import org.kordamp.javatrove.chat02.client.ClientCommandHandler;
 import org.kordamp.javatrove.chat02.client.model.AppModel;
@@ -42,5 +43,9 @@ public class ClientLogoutCommandHandler implements ClientCommandHandler {
     @Override
     public void handle(Command command) {
         model.getMessages().add(command.getPayload() + " disconnected.");
+        Platform.runLater(() -> {
+            model.getTyping().remove(command.getPayload());
+            model.getPresence().remove(command.getPayload());
+        });
     }
 }
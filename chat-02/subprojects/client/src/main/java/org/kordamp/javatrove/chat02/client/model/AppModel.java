@@ -25,13 +25,18 @@ import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import javafx.collections.ObservableList;
+import javafx.collections.ObservableMap;
+import javafx.collections.ObservableSet;
 import lombok.Getter;
 import lombok.Setter;
 import org.kordamp.javatrove.chat02.client.ChatClient;
 
+import java.util.LinkedHashSet;
 import java.util.Optional;
 
 import static javafx.collections.FXCollections.observableArrayList;
+import static javafx.collections.FXCollections.observableHashMap;
+import static javafx.collections.FXCollections.observableSet;
 import static org.kordamp.javatrove.chat02.ChatUtil.SERVER_PORT;
 
 /**
@@ -40,6 +45,10 @@ import static org.kordamp.javatrove.chat02.ChatUtil.SERVER_PORT;
 public class AppModel {
     @Getter
     private final ObservableList<String> messages = observableArrayList();
+    @Getter
+    private final ObservableSet<String> typing = observableSet(new LinkedHashSet<>());
+    @Getter
+    private final ObservableMap<String, String> presence = observableHashMap();
 
     private StringProperty server;
     private IntegerProperty port;
@@ -55,6 +64,8 @@ public class AppModel {
         setConnected(false);
         if (clearMessages) {
             getMessages().clear();
+            getTyping().clear();
+            getPresence().clear();
         }
     }
 
@@ -22,6 +22,7 @@ import javafx.application.Platform;
 import javafx.beans.binding.Bindings;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
+import javafx.collections.SetChangeListener;
 import javafx.collections.transformation.TransformationList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
@@ -29,6 +30,7 @@ import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
+import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
@@ -44,6 +46,8 @@ import org.reactfx.EventStreams;
 import javax.inject.Inject;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 
 import static java.util.Objects.requireNonNull;
 import static org.kordamp.javatrove.chat02.ChatUtil.NAME_SEPARATOR;
@@ -64,6 +68,7 @@ public class AppView {
     @FXML private Button logoutButton;
     @FXML private Button sendButton;
     @FXML private VBox placeholder;
+    @FXML private Label typing;
 
     private StyleClassedTextArea content;
     private ObservableList<String> uiMessages;
@@ -121,6 +126,12 @@ public class AppView {
 
         name.textProperty().bindBidirectional(model.nameProperty());
         message.textProperty().bindBidirectional(model.messageProperty());
+        message.textProperty().addListener((observable, oldValue, newValue) -> {
+            if (model.isConnected()) {
+                controller.typing(!isBlank(newValue));
+            }
+        });
+        model.getTyping().addListener((SetChangeListener<String>) change -> runInsideUIThread(this::updateTyping));
 
         loginButton.disableProperty().bind(EasyBind.combine(model.serverProperty(), model.nameProperty(), model.connectedProperty(),
             (server1, name1, connected) -> connected || isBlank(server1) || isBlank(name1)));
@@ -131,6 +142,12 @@ public class AppView {
             (connected, message1) -> !connected || isBlank(message1)));
 
         Scene scene = new Scene(root);
+        scene.windowProperty().addListener((observable, oldWindow, window) ->
+            window.focusedProperty().addListener((o, wasFocused, focused) -> {
+                if (model.isConnected()) {
+                    controller.presence(focused);
+                }
+            }));
         scene.getStylesheets().addAll(basename + ".css", "org/kordamp/bootstrapfx/bootstrapfx.css");
         return scene;
     }
@@ -152,6 +169,17 @@ public class AppView {
         }
     }
 
+    private void updateTyping() {
+        List<String> names = new ArrayList<>(model.getTyping());
+        if (names.isEmpty()) {
+            typing.setText("");
+        } else if (names.size() == 1) {
+            typing.setText(names.get(0) + " is typing...");
+        } else {
+            typing.setText(String.join(", ", names) + " are typing...");
+        }
+    }
+
     public void login(ActionEvent ignored) {
         controller.login();
     }
@@ -164,6 +192,14 @@ public class AppView {
         controller.send();
     }
 
+    private static void runInsideUIThread(Runnable runnable) {
+        if (Platform.isFxApplicationThread()) {
+            runnable.run();
+        } else {
+            Platform.runLater(runnable);
+        }
+    }
+
     private static boolean isBlank(String str) {
         return str == null || str.trim().length() == 0;
     }
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat02.server;
+
+import org.kordamp.javatrove.chat02.grpc.Response;
+
+import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Responses drained from a mailbox, together with the sequence number after which
+ * the mailbox holds every response that was broadcast to its room.
+ *
+ * @author Andres Almiray
+ */
+public final class MailboxContents {
+    public static final MailboxContents EMPTY = new MailboxContents(Long.MAX_VALUE, Collections.emptyList());
+
+    private final long completeAfter;
+    private final List<Response> responses;
+
+    public MailboxContents(long completeAfter, @Nonnull List<Response> responses) {
+        this.completeAfter = completeAfter;
+        this.responses = responses;
+    }
+
+    @Nonnull
+    public List<Response> getResponses() {
+        return responses;
+    }
+
+    /**
+     * Whether these responses include every response broadcast after {@code lastSeen}.
+     */
+    public boolean covers(long lastSeen) {
+        return lastSeen >= completeAfter;
+    }
+}
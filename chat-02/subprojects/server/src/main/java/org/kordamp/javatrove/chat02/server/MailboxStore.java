@@ -0,0 +1,48 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat02.server;
+
+import org.kordamp.javatrove.chat02.grpc.Response;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Buffers the responses broadcast to a room for users that dropped off it until they
+ * log in again.
+ *
+ * @author Andres Almiray
+ */
+public interface MailboxStore {
+    /**
+     * Starts buffering responses for {@code name}, who just went offline in {@code room}
+     * after the response with the given {@code sequence} number was broadcast.
+     */
+    void open(@Nonnull String room, @Nonnull String name, long sequence);
+
+    /**
+     * Appends a response to the mailbox of every offline member of {@code room}.
+     */
+    void deliver(@Nonnull String room, @Nonnull Response response);
+
+    /**
+     * Removes the mailbox of {@code name} in {@code room}, returning its unexpired responses in order.
+     */
+    @Nonnull
+    MailboxContents drain(@Nonnull String room, @Nonnull String name);
+}
@@ -20,15 +20,35 @@ package org.kordamp.javatrove.chat02.server;
 
 import org.kordamp.javatrove.chat02.server.impl.ChatHandlerImpl;
 import org.kordamp.javatrove.chat02.server.impl.ChatServerImpl;
+import org.kordamp.javatrove.chat02.server.impl.ConsistentHashRoomRouter;
+import org.kordamp.javatrove.chat02.server.impl.InvertedMessageIndex;
+import org.kordamp.javatrove.chat02.server.impl.MetricsInterceptorImpl;
+import org.kordamp.javatrove.chat02.server.impl.OffHeapMailboxStore;
 import org.kordamp.javatrove.chat02.server.impl.ScheduledExecutorServiceProvider;
+import org.kordamp.javatrove.chat02.server.impl.StatsHandlerImpl;
 import ru.vyarus.guice.ext.ExtAnnotationsModule;
 
 import javax.inject.Singleton;
 import java.util.concurrent.ScheduledExecutorService;
 
 import static com.google.inject.name.Names.named;
+import static org.kordamp.javatrove.chat02.ChatUtil.CLUSTER_NODES_KEY;
+import static org.kordamp.javatrove.chat02.ChatUtil.CLUSTER_NODES_PROPERTY;
+import static org.kordamp.javatrove.chat02.ChatUtil.HISTORY_SIZE;
+import static org.kordamp.javatrove.chat02.ChatUtil.HISTORY_SIZE_KEY;
+import static org.kordamp.javatrove.chat02.ChatUtil.MAILBOX_CAPACITY;
+import static org.kordamp.javatrove.chat02.ChatUtil.MAILBOX_CAPACITY_KEY;
+import static org.kordamp.javatrove.chat02.ChatUtil.MAILBOX_SIZE;
+import static org.kordamp.javatrove.chat02.ChatUtil.MAILBOX_SIZE_KEY;
+import static org.kordamp.javatrove.chat02.ChatUtil.MAILBOX_TTL;
+import static org.kordamp.javatrove.chat02.ChatUtil.MAILBOX_TTL_KEY;
+import static org.kordamp.javatrove.chat02.ChatUtil.NODE_ADDRESS_KEY;
+import static org.kordamp.javatrove.chat02.ChatUtil.SEARCH_RETENTION;
+import static org.kordamp.javatrove.chat02.ChatUtil.SEARCH_RETENTION_KEY;
+import static org.kordamp.javatrove.chat02.ChatUtil.NODE_ADDRESS_PROPERTY;
 import static org.kordamp.javatrove.chat02.ChatUtil.SERVER_PORT;
 import static org.kordamp.javatrove.chat02.ChatUtil.SERVER_PORT_KEY;
+import static org.kordamp.javatrove.chat02.ChatUtil.SERVER_PORT_PROPERTY;
 
 /**
  * @author Andres Almiray
@@ -42,15 +62,61 @@ public class ServerModule extends ExtAnnotationsModule {
     protected final void configure() {
         super.configure();
         bindServerPort();
+        bindHistorySize();
+        bindClusterNodes();
+        bindNodeAddress();
+        bindMailboxLimits();
+        bindSearchRetention();
         bindChatServer();
         bindChatHandler();
+        bindMetricsInterceptor();
+        bindStatsHandler();
+        bindRoomRouter();
+        bindMailboxStore();
+        bindMessageIndex();
         bindExecutorService();
     }
 
     protected void bindServerPort() {
         bindConstant()
             .annotatedWith(named(SERVER_PORT_KEY))
-            .to(SERVER_PORT);
+            .to(serverPort());
+    }
+
+    protected void bindHistorySize() {
+        bindConstant()
+            .annotatedWith(named(HISTORY_SIZE_KEY))
+            .to(HISTORY_SIZE);
+    }
+
+    protected void bindClusterNodes() {
+        bindConstant()
+            .annotatedWith(named(CLUSTER_NODES_KEY))
+            .to(System.getProperty(CLUSTER_NODES_PROPERTY, nodeAddress()));
+    }
+
+    protected void bindNodeAddress() {
+        bindConstant()
+            .annotatedWith(named(NODE_ADDRESS_KEY))
+            .to(nodeAddress());
+    }
+
+    protected void bindMailboxLimits() {
+        bindConstant()
+            .annotatedWith(named(MAILBOX_CAPACITY_KEY))
+            .to(MAILBOX_CAPACITY);
+        bindConstant()
+            .annotatedWith(named(MAILBOX_SIZE_KEY))
+            .to(MAILBOX_SIZE);
+        bindConstant()
+            .annotatedWith(named(MAILBOX_TTL_KEY))
+            .to(MAILBOX_TTL);
+    }
+
+    protected void bindSearchRetention() {
+        bindConstant()
+            .annotatedWith(named(SEARCH_RETENTION_KEY))
+            .to(SEARCH_RETENTION);
     }
 
     protected void bindChatServer() {
@@ -65,9 +131,47 @@ public class ServerModule extends ExtAnnotationsModule {
             .in(Singleton.class);
     }
 
+    protected void bindMetricsInterceptor() {
+        bind(MetricsInterceptor.class)
+            .to(MetricsInterceptorImpl.class)
+            .in(Singleton.class);
+    }
+
+    protected void bindStatsHandler() {
+        bind(StatsHandler.class)
+            .to(StatsHandlerImpl.class)
+            .in(Singleton.class);
+    }
+
+    protected void bindRoomRouter() {
+        bind(RoomRouter.class)
+            .to(ConsistentHashRoomRouter.class)
+            .in(Singleton.class);
+    }
+
+    protected void bindMailboxStore() {
+        bind(MailboxStore.class)
+            .to(OffHeapMailboxStore.class)
+            .in(Singleton.class);
+    }
+
+    protected void bindMessageIndex() {
+        bind(MessageIndex.class)
+            .to(InvertedMessageIndex.class)
+            .in(Singleton.class);
+    }
+
     protected void bindExecutorService() {
         bind(ScheduledExecutorService.class)
             .toProvider(ScheduledExecutorServiceProvider.class)
             .in(Singleton.class);
     }
+
+    protected int serverPort() {
+        return Integer.getInteger(SERVER_PORT_PROPERTY, SERVER_PORT);
+    }
+
+    protected String nodeAddress() {
+        return System.getProperty(NODE_ADDRESS_PROPERTY, "localhost:" + serverPort());
+    }
 }
@@ -19,21 +19,28 @@
 package org.kordamp.javatrove.chat02.server.impl;
 
 import com.google.protobuf.Empty;
-import io.grpc.StatusRuntimeException;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
-import lombok.Data;
 import org.kordamp.javatrove.chat02.grpc.ChatGrpc;
+import org.kordamp.javatrove.chat02.grpc.Indicator;
 import org.kordamp.javatrove.chat02.grpc.Login;
 import org.kordamp.javatrove.chat02.grpc.Logout;
 import org.kordamp.javatrove.chat02.grpc.Message;
 import org.kordamp.javatrove.chat02.grpc.Response;
+import org.kordamp.javatrove.chat02.grpc.SearchRequest;
 import org.kordamp.javatrove.chat02.server.ChatHandler;
+import org.kordamp.javatrove.chat02.server.MailboxStore;
+import org.kordamp.javatrove.chat02.server.MessageIndex;
+import org.kordamp.javatrove.chat02.server.MetricsInterceptor;
+import org.kordamp.javatrove.chat02.server.RoomRouter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
+import javax.inject.Named;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -43,15 +50,28 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
+import static org.kordamp.javatrove.chat02.ChatUtil.DEFAULT_ROOM;
+import static org.kordamp.javatrove.chat02.ChatUtil.HISTORY_SIZE_KEY;
+import static org.kordamp.javatrove.chat02.ChatUtil.SEARCH_LIMIT;
+
 /**
  * @author Andres Almiray
  */
 public class ChatHandlerImpl extends ChatGrpc.ChatImplBase implements ChatHandler {
     private static final Logger LOG = LoggerFactory.getLogger(ChatHandlerImpl.class);
+    private static final int MAX_SEARCH_LIMIT = 1000;
 
     @Inject private ScheduledExecutorService scheduledExecutorService;
+    @Inject private RoomRouter roomRouter;
+    @Inject private MailboxStore mailboxStore;
+    @Inject private MessageIndex messageIndex;
+    @Inject private MetricsInterceptor metricsInterceptor;
+
+    @Inject
+    @Named(HISTORY_SIZE_KEY)
+    private int historySize;
 
-    private final Map<String, ClientContext> clients = new ConcurrentHashMap<>();
+    private final Map<String, ChatRoom> rooms = new ConcurrentHashMap<>();
     private final List<ClientContext> failures = new CopyOnWriteArrayList<>();
 
     @PostConstruct
@@ -62,33 +82,43 @@ public class ChatHandlerImpl extends ChatGrpc.ChatImplBase implements ChatHandle
     private void cleanupClients() {
         List<ClientContext> clients = new ArrayList<>(failures);
         failures.clear();
-        List<Response> responses = new ArrayList<>();
-        clients.forEach(c -> responses.add(Response.newBuilder()
+        clients.forEach(c -> room(c.getRoom()).broadcast(Response.newBuilder()
             .setType(Response.Type.LOGOUT)
-            .setPayload(c.getName())
-            .build()));
-        dowWithObservers(o -> responses.forEach(o::onNext));
+            .setPayload(c.getName())));
     }
 
     @Override
     public void login(Login request, StreamObserver<Response> responseObserver) {
-        clients.put(request.getId(), new ClientContext(request.getId(), request.getName(), responseObserver));
-        Response response = Response.newBuilder()
-            .setType(Response.Type.LOGIN)
-            .setPayload(request.getName())
-            .build();
-        dowWithObservers(observer -> observer.onNext(response));
+        String roomName = roomName(request.getRoom());
+        if (!roomRouter.isLocal(roomName)) {
+            responseObserver.onNext(Response.newBuilder()
+                .setType(Response.Type.REDIRECT)
+                .setPayload(roomRouter.ownerOf(roomName))
+                .build());
+            responseObserver.onCompleted();
+            return;
+        }
+
+        ChatRoom room = room(roomName);
+        ClientContext context = new ClientContext(request.getId(), request.getName(), roomName);
+        context.setOutbound(new OutboundQueue(responseObserver, scheduledExecutorService, metricsInterceptor::responsesDropped, () -> {
+            failures.add(context);
+            room.disconnect(context);
+        }));
+        if (responseObserver instanceof ServerCallStreamObserver) {
+            ((ServerCallStreamObserver<Response>) responseObserver).setOnCancelHandler(context.getOutbound()::fail);
+        }
+        room.join(context, request.getLastSeenSeq());
     }
 
     @Override
     public void logout(Logout request, StreamObserver<Empty> responseObserver) {
         doWithObserver(responseObserver, observer -> {
-            Response response = Response.newBuilder()
+            ChatRoom room = localRoom(request.getRoom());
+            room.broadcast(Response.newBuilder()
                 .setType(Response.Type.LOGOUT)
-                .setPayload(request.getName())
-                .build();
-            dowWithObservers(o -> o.onNext(response));
-            clients.remove(request.getId()).getObserver().onCompleted();
+                .setPayload(request.getName()));
+            room.leave(request.getId()).getOutbound().close();
             observer.onNext(Empty.getDefaultInstance());
         });
     }
@@ -96,15 +126,54 @@ public class ChatHandlerImpl extends ChatGrpc.ChatImplBase implements ChatHandle
     @Override
     public void send(Message request, StreamObserver<Empty> responseObserver) {
         doWithObserver(responseObserver, observer -> {
-            Response response = Response.newBuilder()
+            String roomName = roomName(request.getRoom());
+            Response response = localRoom(roomName).broadcast(Response.newBuilder()
                 .setType(Response.Type.MESSAGE)
-                .setPayload(request.getMessage())
-                .build();
-            dowWithObservers(o -> o.onNext(response));
+                .setPayload(request.getMessage()));
+            messageIndex.add(roomName, response);
+            observer.onNext(Empty.getDefaultInstance());
+        });
+    }
+
+    @Override
+    public void indicate(Indicator request, StreamObserver<Empty> responseObserver) {
+        doWithObserver(responseObserver, observer -> {
+            localRoom(request.getRoom()).indicate(request);
             observer.onNext(Empty.getDefaultInstance());
         });
     }
 
+    @Override
+    public void search(SearchRequest request, StreamObserver<Response> responseObserver) {
+        doWithObserver(responseObserver, observer -> {
+            String roomName = roomName(request.getRoom());
+            localRoom(roomName);
+            int limit = request.getLimit() > 0 ? Math.min(request.getLimit(), MAX_SEARCH_LIMIT) : SEARCH_LIMIT;
+            messageIndex.search(roomName, request.getQuery(), limit).forEach(observer::onNext);
+        });
+    }
+
+    @Nonnull
+    private ChatRoom localRoom(@Nonnull String name) {
+        String roomName = roomName(name);
+        if (!roomRouter.isLocal(roomName)) {
+            throw Status.FAILED_PRECONDITION
+                .withDescription("Room " + roomName + " is owned by " + roomRouter.ownerOf(roomName))
+                .asRuntimeException();
+        }
+        return room(roomName);
+    }
+
+    @Nonnull
+    private ChatRoom room(@Nonnull String name) {
+        return rooms.computeIfAbsent(name, n -> new ChatRoom(n, historySize, mailboxStore));
+    }
+
+    @Nonnull
+    private static String roomName(@Nonnull String name) {
+        return name.isEmpty() ? DEFAULT_ROOM : name;
+    }
+
     private <T> void doWithObserver(@Nonnull StreamObserver<T> observer, @Nonnull Consumer<StreamObserver<T>> consumer) {
         try {
             consumer.accept(observer);
@@ -114,22 +183,4 @@ public class ChatHandlerImpl extends ChatGrpc.ChatImplBase implements ChatHandle
             observer.onError(e);
         }
     }
-
-    private void dowWithObservers(@Nonnull Consumer<StreamObserver<Response>> consumer) {
-        clients.forEach((key, context) -> {
-            try {
-                consumer.accept(context.getObserver());
-            } catch (StatusRuntimeException ignored) {
-                failures.add(context);
-                clients.remove(key);
-            }
-        });
-    }
-
-    @Data
-    private static class ClientContext {
-        private final String id;
-        private final String name;
-        private final StreamObserver<Response> observer;
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat02.server.impl;
+
+import org.kordamp.javatrove.chat02.grpc.Indicator;
+import org.kordamp.javatrove.chat02.grpc.Response;
+import org.kordamp.javatrove.chat02.grpc.ResponseBatch;
+import org.kordamp.javatrove.chat02.server.MailboxContents;
+import org.kordamp.javatrove.chat02.server.MailboxStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Members of a single room together with the history of responses broadcast to them.
+ * Sequence numbers are assigned per room. Responses broadcast while a member is offline
+ * are kept in that member's mailbox and handed over in one batch on the next login, so
+ * that the member sees every sequence number.
+ * A member is only asked to resync when neither the history nor its mailbox cover
+ * everything it missed.
+ *
+ * @author Andres Almiray
+ */
+class ChatRoom {
+    private static final Logger LOG = LoggerFactory.getLogger(ChatRoom.class);
+
+    private final String name;
+    private final Map<String, ClientContext> clients = new ConcurrentHashMap<>();
+    private final ResponseHistory history;
+    private final MailboxStore mailboxes;
+
+    ChatRoom(@Nonnull String name, int historySize, @Nonnull MailboxStore mailboxes) {
+        this.name = name;
+        this.history = new ResponseHistory(historySize);
+        this.mailboxes = mailboxes;
+    }
+
+    synchronized void join(@Nonnull ClientContext context, long lastSeen) {
+        MailboxContents missed = mailboxes.drain(name, context.getName());
+        if (lastSeen > 0 && history.canReplayFrom(lastSeen)) {
+            LOG.debug("Replaying responses in {} after {} to {}", name, lastSeen, context.getName());
+            history.replayFrom(lastSeen, context.getOutbound()::send);
+        } else {
+            List<Response> responses = missed.getResponses().stream()
+                .filter(response -> response.getSequence() > lastSeen)
+                .collect(Collectors.toList());
+            if (lastSeen > 0 && !missed.covers(lastSeen)) {
+                LOG.debug("Responses in {} after {} are no longer available, requesting {} to resync", name, lastSeen, context.getName());
+                // resume right before what is still available
+                context.getOutbound().send(Response.newBuilder()
+                    .setType(Response.Type.RESYNC)
+                    .setSequence(responses.isEmpty() ? history.getLastSequence() : responses.get(0).getSequence() - 1)
+                    .build());
+            }
+            forward(context, responses);
+        }
+        clients.put(context.getId(), context);
+        broadcast(Response.newBuilder()
+            .setType(Response.Type.LOGIN)
+            .setPayload(context.getName()));
+    }
+
+    synchronized ClientContext leave(@Nonnull String id) {
+        return clients.remove(id);
+    }
+
+    /**
+     * Removes a member whose stream failed and starts keeping its messages,
+     * unless the same user is still connected through another stream.
+     */
+    synchronized void disconnect(@Nonnull ClientContext context) {
+        clients.remove(context.getId(), context);
+        boolean online = clients.values().stream()
+            .anyMatch(c -> c.getName().equals(context.getName()));
+        if (!online) {
+            mailboxes.open(name, context.getName(), history.getLastSequence());
+        }
+    }
+
+    @Nonnull
+    synchronized Response broadcast(@Nonnull Response.Builder builder) {
+        Response response = history.append(builder);
+        clients.values().forEach(context -> context.getOutbound().send(response));
+        mailboxes.deliver(name, response);
+        return response;
+    }
+
+    /**
+     * Fans an indicator out to every other member. Indicators are neither sequenced nor
+     * kept in the history, and only the latest one per sender and kind is queued.
+     */
+    void indicate(@Nonnull Indicator indicator) {
+        Response response = Response.newBuilder()
+            .setType(Response.Type.INDICATOR)
+            .setIndicator(indicator)
+            .build();
+        String key = indicator.getId() + "/" + indicator.getKind();
+        clients.values().stream()
+            .filter(context -> !context.getId().equals(indicator.getId()))
+            .forEach(context -> context.getOutbound().conflate(key, response));
+    }
+
+    private void forward(@Nonnull ClientContext context, @Nonnull List<Response> responses) {
+        if (!responses.isEmpty()) {
+            LOG.debug("Forwarding {} buffered responses in {} to {}", responses.size(), name, context.getName());
+            context.getOutbound().send(Response.newBuilder()
+                .setType(Response.Type.BATCH)
+                .setBatch(ResponseBatch.newBuilder().addAllResponses(responses))
+                .build());
+        }
+    }
+}
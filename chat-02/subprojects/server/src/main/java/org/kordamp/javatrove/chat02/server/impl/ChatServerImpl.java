@@ -19,9 +19,12 @@
 package org.kordamp.javatrove.chat02.server.impl;
 
 import io.grpc.Server;
+import io.grpc.ServerInterceptors;
 import io.grpc.netty.NettyServerBuilder;
 import org.kordamp.javatrove.chat02.server.ChatHandler;
 import org.kordamp.javatrove.chat02.server.ChatServer;
+import org.kordamp.javatrove.chat02.server.MetricsInterceptor;
+import org.kordamp.javatrove.chat02.server.StatsHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,6 +45,8 @@ public class ChatServerImpl implements ChatServer {
     private int port;
 
     @Inject private ChatHandler chatHandler;
+    @Inject private StatsHandler statsHandler;
+    @Inject private MetricsInterceptor metricsInterceptor;
     @Inject private ScheduledExecutorService scheduledExecutorService;
 
     private Server server;
@@ -50,7 +55,8 @@ public class ChatServerImpl implements ChatServer {
     public void start() throws Exception {
         LOG.info("Configuring server on port " + port);
         server = NettyServerBuilder.forPort(port)
-            .addService(chatHandler)
+            .addService(ServerInterceptors.intercept(chatHandler, metricsInterceptor))
+            .addService(statsHandler)
             .build();
         LOG.info("Starting server");
         server.start();
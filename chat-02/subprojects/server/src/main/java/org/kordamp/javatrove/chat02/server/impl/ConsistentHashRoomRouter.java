@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat02.server.impl;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.kordamp.javatrove.chat02.server.RoomRouter;
+
+import javax.annotation.Nonnull;
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import static org.kordamp.javatrove.chat02.ChatUtil.CLUSTER_NODES_KEY;
+import static org.kordamp.javatrove.chat02.ChatUtil.NODE_ADDRESS_KEY;
+
+/**
+ * Places every node on a consistent-hash ring several times (virtual nodes) so that
+ * rooms spread evenly and adding a node only moves the rooms it takes over.
+ *
+ * @author Andres Almiray
+ */
+public class ConsistentHashRoomRouter implements RoomRouter {
+    private static final int VIRTUAL_NODES = 128;
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    @Inject
+    @Named(CLUSTER_NODES_KEY)
+    private String clusterNodes;
+
+    @Inject
+    @Named(NODE_ADDRESS_KEY)
+    private String nodeAddress;
+
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+
+    @PostConstruct
+    private void init() {
+        for (String node : clusterNodes.split(",")) {
+            node = node.trim();
+            if (node.isEmpty()) {
+                continue;
+            }
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                ring.put(hash(node + "#" + i), node);
+            }
+        }
+        if (!ring.containsValue(nodeAddress)) {
+            throw new IllegalStateException("Node " + nodeAddress + " is not part of the cluster " + clusterNodes);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public String ownerOf(@Nonnull String room) {
+        Map.Entry<Long, String> entry = ring.ceilingEntry(hash(room));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    @Override
+    public boolean isLocal(@Nonnull String room) {
+        return nodeAddress.equals(ownerOf(room));
+    }
+
+    private static long hash(String key) {
+        return HASH.hashString(key, StandardCharsets.UTF_8).asLong();
+    }
+}
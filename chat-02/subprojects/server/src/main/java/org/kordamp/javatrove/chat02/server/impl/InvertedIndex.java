@@ -0,0 +1,145 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat02.server.impl;
+
+import org.kordamp.javatrove.chat02.grpc.Response;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index over a bounded window of the most recent messages of a room.
+ * Messages get consecutive ids, so every posting list is sorted by recency and the
+ * message evicted to make room for a new one is always at the head of its lists.
+ *
+ * @author Andres Almiray
+ */
+class InvertedIndex {
+    private final Response[] documents;
+    private final Map<String, PostingList> postings = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int nextId;
+
+    InvertedIndex(int retention) {
+        if (retention < 1) {
+            throw new IllegalArgumentException("Index retention must be greater than 0");
+        }
+        this.documents = new Response[retention];
+    }
+
+    void add(@Nonnull Response response) {
+        lock.writeLock().lock();
+        try {
+            if (nextId == Integer.MAX_VALUE) {
+                postings.clear();
+                Arrays.fill(documents, null);
+                nextId = 0;
+            }
+            int id = nextId++;
+            int slot = id % documents.length;
+            if (documents[slot] != null) {
+                evict(id - documents.length, documents[slot]);
+            }
+            documents[slot] = response;
+            for (String term : terms(response.getPayload())) {
+                postings.computeIfAbsent(term, t -> new PostingList()).add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Nonnull
+    List<Response> search(@Nonnull Set<String> terms, int limit) {
+        if (terms.isEmpty() || limit < 1) {
+            return Collections.emptyList();
+        }
+
+        lock.readLock().lock();
+        try {
+            PostingList[] lists = new PostingList[terms.size()];
+            int i = 0;
+            for (String term : terms) {
+                PostingList list = postings.get(term);
+                if (list == null) {
+                    return Collections.emptyList();
+                }
+                lists[i++] = list;
+            }
+            Arrays.sort(lists, Comparator.comparingInt(PostingList::size));
+
+            List<Response> results = new ArrayList<>();
+            PostingList shortest = lists[0];
+            for (int p = shortest.size() - 1; p >= 0 && results.size() < limit; p--) {
+                int id = shortest.get(p);
+                if (containsAll(lists, id)) {
+                    results.add(documents[id % documents.length]);
+                }
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Nonnull
+    static Set<String> terms(@Nonnull String text) {
+        Set<String> terms = new HashSet<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                terms.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    private void evict(int id, Response response) {
+        for (String term : terms(response.getPayload())) {
+            PostingList list = postings.get(term);
+            if (list != null && list.removeFirst(id) && list.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    private static boolean containsAll(PostingList[] lists, int id) {
+        for (int i = 1; i < lists.length; i++) {
+            if (!lists[i].contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
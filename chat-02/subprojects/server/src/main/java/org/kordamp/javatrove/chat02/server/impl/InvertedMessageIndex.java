@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat02.server.impl;
+
+import org.kordamp.javatrove.chat02.grpc.Response;
+import org.kordamp.javatrove.chat02.server.MessageIndex;
+
+import javax.annotation.Nonnull;
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.kordamp.javatrove.chat02.ChatUtil.SEARCH_RETENTION_KEY;
+
+/**
+ * Keeps a separate {@code InvertedIndex} per room.
+ *
+ * @author Andres Almiray
+ */
+public class InvertedMessageIndex implements MessageIndex {
+    @Inject
+    @Named(SEARCH_RETENTION_KEY)
+    private int retention;
+
+    private final Map<String, InvertedIndex> rooms = new ConcurrentHashMap<>();
+
+    @Override
+    public void add(@Nonnull String room, @Nonnull Response response) {
+        rooms.computeIfAbsent(room, r -> new InvertedIndex(retention)).add(response);
+    }
+
+    @Nonnull
+    @Override
+    public List<Response> search(@Nonnull String room, @Nonnull String query, int limit) {
+        InvertedIndex index = rooms.get(room);
+        return index != null ? index.search(InvertedIndex.terms(query), limit) : Collections.emptyList();
+    }
+}
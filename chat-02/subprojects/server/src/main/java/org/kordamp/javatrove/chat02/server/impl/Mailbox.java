@@ -0,0 +1,179 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat02.server.impl;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.kordamp.javatrove.chat02.grpc.Response;
+import org.kordamp.javatrove.chat02.server.MailboxContents;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Responses buffered for a single offline user. Records are stored serialized in
+ * off-heap segments as {@code [timestamp:long][sequence:long][length:int][response]};
+ * only a tiny descriptor per segment lives on the heap. When the mailbox is full, the
+ * shared pool is exhausted, or its oldest segment has expired, that whole segment is
+ * dropped. The mailbox remembers the newest sequence number it dropped, so a drain
+ * tells which responses it still holds completely.
+ *
+ * @author Andres Almiray
+ */
+class Mailbox {
+    private static final int HEADER_SIZE = Long.BYTES + Long.BYTES + Integer.BYTES;
+
+    private final SegmentPool pool;
+    private final int maxSegments;
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private long completeAfter;
+    private long lastActivity;
+    private boolean closed;
+
+    Mailbox(@Nonnull SegmentPool pool, int maxSegments, long sequence, long timestamp) {
+        this.pool = pool;
+        this.maxSegments = maxSegments;
+        this.completeAfter = sequence;
+        this.lastActivity = timestamp;
+    }
+
+    synchronized boolean append(@Nonnull Response response, long timestamp) {
+        if (closed) {
+            return false;
+        }
+        lastActivity = timestamp;
+        int length = response.getSerializedSize();
+        int recordSize = HEADER_SIZE + length;
+        if (recordSize > pool.getSegmentSize()) {
+            skip(response.getSequence());
+            return false;
+        }
+
+        Segment tail = segments.peekLast();
+        if (tail == null || tail.buffer.remaining() < recordSize) {
+            ByteBuffer buffer = segments.size() < maxSegments ? pool.acquire() : null;
+            if (buffer == null) {
+                if (segments.isEmpty()) {
+                    skip(response.getSequence());
+                    return false;
+                }
+                // full, or the shared pool is exhausted: reuse the oldest segment
+                buffer = dropOldest();
+            }
+            tail = new Segment(buffer);
+            segments.add(tail);
+        }
+
+        ByteBuffer buffer = tail.buffer;
+        buffer.putLong(timestamp).putLong(response.getSequence()).putInt(length);
+        try {
+            CodedOutputStream output = CodedOutputStream.newInstance(buffer);
+            response.writeTo(output);
+            output.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        tail.newest = timestamp;
+        tail.lastSequence = response.getSequence();
+        return true;
+    }
+
+    /**
+     * Drops every segment whose newest record is older than {@code deadline}.
+     *
+     * @return whether the mailbox is now empty and has seen no activity since {@code deadline}
+     */
+    synchronized boolean expire(long deadline) {
+        while (!segments.isEmpty() && segments.peekFirst().newest < deadline) {
+            pool.release(dropOldest());
+        }
+        return segments.isEmpty() && lastActivity < deadline;
+    }
+
+    /**
+     * Returns all records not older than {@code deadline} and releases the storage.
+     */
+    @Nonnull
+    synchronized MailboxContents drain(long deadline) {
+        List<Response> responses = new ArrayList<>();
+        for (Segment segment : segments) {
+            ByteBuffer records = segment.buffer.duplicate();
+            records.flip();
+            while (records.hasRemaining()) {
+                long timestamp = records.getLong();
+                long sequence = records.getLong();
+                int length = records.getInt();
+                if (timestamp >= deadline) {
+                    ByteBuffer record = records.slice();
+                    record.limit(length);
+                    responses.add(parse(record));
+                } else {
+                    skip(sequence);
+                }
+                records.position(records.position() + length);
+            }
+        }
+        clear();
+        return new MailboxContents(completeAfter, responses);
+    }
+
+    /**
+     * Releases the storage. Nothing can be appended afterwards.
+     */
+    synchronized void clear() {
+        closed = true;
+        while (!segments.isEmpty()) {
+            pool.release(segments.poll().buffer);
+        }
+    }
+
+    private ByteBuffer dropOldest() {
+        Segment segment = segments.pollFirst();
+        skip(segment.lastSequence);
+        segment.buffer.clear();
+        return segment.buffer;
+    }
+
+    private void skip(long sequence) {
+        completeAfter = Math.max(completeAfter, sequence);
+    }
+
+    private static Response parse(ByteBuffer record) {
+        try {
+            return Response.parseFrom(record);
+        } catch (InvalidProtocolBufferException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Segment {
+        private final ByteBuffer buffer;
+        private long newest;
+        private long lastSequence;
+
+        private Segment(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat02.server.impl;
+
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.Status;
+import org.kordamp.javatrove.chat02.grpc.LatencyBucket;
+import org.kordamp.javatrove.chat02.grpc.MethodStats;
+import org.kordamp.javatrove.chat02.grpc.StatsReport;
+import org.kordamp.javatrove.chat02.server.MetricsInterceptor;
+
+import javax.annotation.Nonnull;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records per-method call counts, latency histograms, message counts, active
+ * streams and failures by status code for every intercepted call, plus the number
+ * of responses dropped for subscribers that fell too far behind.
+ *
+ * @author Andres Almiray
+ */
+public class MetricsInterceptorImpl implements MetricsInterceptor {
+    private static final long[] LATENCY_BOUNDS_MICROS = {
+        50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000,
+        50_000, 100_000, 250_000, 500_000, 1_000_000, Long.MAX_VALUE
+    };
+
+    private final Map<String, MethodMetrics> metrics = new ConcurrentHashMap<>();
+    private final LongAdder droppedResponses = new LongAdder();
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        MethodDescriptor<ReqT, RespT> method = call.getMethodDescriptor();
+        MethodMetrics methodMetrics = metrics.computeIfAbsent(method.getFullMethodName(), MethodMetrics::new);
+        boolean streaming = !method.getType().serverSendsOneMessage();
+        long start = System.nanoTime();
+        AtomicBoolean closed = new AtomicBoolean();
+
+        methodMetrics.started(streaming);
+        ServerCall<ReqT, RespT> monitoredCall = new ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT>(call) {
+            @Override
+            public void sendMessage(RespT message) {
+                methodMetrics.messagesSent.increment();
+                super.sendMessage(message);
+            }
+
+            @Override
+            public void close(Status status, Metadata trailers) {
+                if (closed.compareAndSet(false, true)) {
+                    methodMetrics.finished(streaming, status, System.nanoTime() - start);
+                }
+                super.close(status, trailers);
+            }
+        };
+
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<ReqT>(next.startCall(monitoredCall, headers)) {
+            @Override
+            public void onMessage(ReqT message) {
+                methodMetrics.messagesReceived.increment();
+                super.onMessage(message);
+            }
+
+            @Override
+            public void onCancel() {
+                if (closed.compareAndSet(false, true)) {
+                    methodMetrics.finished(streaming, Status.CANCELLED, System.nanoTime() - start);
+                }
+                super.onCancel();
+            }
+        };
+    }
+
+    @Nonnull
+    @Override
+    public StatsReport snapshot() {
+        StatsReport.Builder report = StatsReport.newBuilder();
+        metrics.values().forEach(m -> report.addMethods(m.snapshot()));
+        report.setDroppedResponses(droppedResponses.sum());
+        return report.build();
+    }
+
+    @Override
+    public void responsesDropped(int count) {
+        droppedResponses.add(count);
+    }
+
+    private static class MethodMetrics {
+        private final String method;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder inFlight = new LongAdder();
+        private final LongAdder activeStreams = new LongAdder();
+        private final LongAdder messagesReceived = new LongAdder();
+        private final LongAdder messagesSent = new LongAdder();
+        private final LongAdder[] latency = new LongAdder[LATENCY_BOUNDS_MICROS.length];
+        private final Map<Status.Code, LongAdder> failures = new ConcurrentHashMap<>();
+
+        private MethodMetrics(String method) {
+            this.method = method;
+            for (int i = 0; i < latency.length; i++) {
+                latency[i] = new LongAdder();
+            }
+        }
+
+        private void started(boolean streaming) {
+            calls.increment();
+            inFlight.increment();
+            if (streaming) {
+                activeStreams.increment();
+            }
+        }
+
+        private void finished(boolean streaming, Status status, long elapsedNanos) {
+            inFlight.decrement();
+            if (streaming) {
+                activeStreams.decrement();
+            }
+            if (!status.isOk()) {
+                failures.computeIfAbsent(status.getCode(), c -> new LongAdder()).increment();
+            }
+
+            long micros = TimeUnit.NANOSECONDS.toMicros(elapsedNanos);
+            int bucket = 0;
+            while (micros > LATENCY_BOUNDS_MICROS[bucket]) {
+                bucket++;
+            }
+            latency[bucket].increment();
+        }
+
+        private MethodStats snapshot() {
+            MethodStats.Builder stats = MethodStats.newBuilder()
+                .setMethod(method)
+                .setCalls(calls.sum())
+                .setInFlight(inFlight.sum())
+                .setActiveStreams(activeStreams.sum())
+                .setMessagesReceived(messagesReceived.sum())
+                .setMessagesSent(messagesSent.sum());
+            for (int i = 0; i < latency.length; i++) {
+                stats.addLatency(LatencyBucket.newBuilder()
+                    .setUpperBoundMicros(LATENCY_BOUNDS_MICROS[i])
+                    .setCount(latency[i].sum()));
+            }
+            failures.forEach((code, count) -> stats.putFailures(code.name(), count.sum()));
+            return stats.build();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat02.server.impl;
+
+import org.kordamp.javatrove.chat02.grpc.Response;
+import org.kordamp.javatrove.chat02.server.MailboxContents;
+import org.kordamp.javatrove.chat02.server.MailboxStore;
+
+import javax.annotation.Nonnull;
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.kordamp.javatrove.chat02.ChatUtil.MAILBOX_CAPACITY_KEY;
+import static org.kordamp.javatrove.chat02.ChatUtil.MAILBOX_SIZE_KEY;
+import static org.kordamp.javatrove.chat02.ChatUtil.MAILBOX_TTL_KEY;
+
+/**
+ * Keeps mailboxes in segments of a shared off-heap pool, so thousands of offline
+ * users cost little more than a map entry each on the heap.
+ *
+ * @author Andres Almiray
+ */
+public class OffHeapMailboxStore implements MailboxStore {
+    private static final int SEGMENT_SIZE = 8 * 1024;
+
+    @Inject private ScheduledExecutorService scheduledExecutorService;
+
+    @Inject
+    @Named(MAILBOX_CAPACITY_KEY)
+    private long capacity;
+
+    @Inject
+    @Named(MAILBOX_SIZE_KEY)
+    private int mailboxSize;
+
+    @Inject
+    @Named(MAILBOX_TTL_KEY)
+    private long ttl;
+
+    private final Map<String, Map<String, Mailbox>> rooms = new ConcurrentHashMap<>();
+    private SegmentPool pool;
+
+    @PostConstruct
+    private void init() {
+        pool = new SegmentPool(capacity, SEGMENT_SIZE);
+        long period = Math.max(1000, ttl / 10);
+        scheduledExecutorService.scheduleAtFixedRate(this::purgeExpired, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void open(@Nonnull String room, @Nonnull String name, long sequence) {
+        int maxSegments = Math.max(1, mailboxSize / SEGMENT_SIZE);
+        mailboxes(room).putIfAbsent(name, new Mailbox(pool, maxSegments, sequence, System.currentTimeMillis()));
+    }
+
+    @Override
+    public void deliver(@Nonnull String room, @Nonnull Response response) {
+        Map<String, Mailbox> mailboxes = rooms.get(room);
+        if (mailboxes != null) {
+            long now = System.currentTimeMillis();
+            mailboxes.values().forEach(mailbox -> mailbox.append(response, now));
+        }
+    }
+
+    @Nonnull
+    @Override
+    public MailboxContents drain(@Nonnull String room, @Nonnull String name) {
+        Mailbox mailbox = mailboxes(room).remove(name);
+        return mailbox != null ? mailbox.drain(System.currentTimeMillis() - ttl) : MailboxContents.EMPTY;
+    }
+
+    private Map<String, Mailbox> mailboxes(String room) {
+        return rooms.computeIfAbsent(room, r -> new ConcurrentHashMap<>());
+    }
+
+    private void purgeExpired() {
+        long deadline = System.currentTimeMillis() - ttl;
+        rooms.values().forEach(mailboxes -> mailboxes.forEach((name, mailbox) -> {
+            if (mailbox.expire(deadline) && mailboxes.remove(name, mailbox)) {
+                mailbox.clear();
+            }
+        }));
+    }
+}
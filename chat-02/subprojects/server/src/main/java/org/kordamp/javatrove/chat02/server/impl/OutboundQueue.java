@@ -0,0 +1,277 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat02.server.impl;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import org.kordamp.javatrove.chat02.grpc.Response;
+import org.kordamp.javatrove.chat02.grpc.ResponseBatch;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * Outbound path of a single subscriber. Responses are written straight through
+ * while the subscriber keeps up. Once responses start queueing up (the queue reaches
+ * the batch threshold or the transport reports it is not ready) the queue switches
+ * to batching mode: it lingers briefly and then writes everything pending as a
+ * single {@code BATCH} response. It switches back as soon as a drain finds at most
+ * one pending response.
+ * <p>
+ * Conflated responses, such as typing and presence indicators, are keyed. While they
+ * wait in the queue a newer response with the same key replaces the older one, so a
+ * subscriber that falls behind only receives the latest state.
+ * <p>
+ * At most {@code MAX_PENDING} non-conflated responses are kept for a subscriber that
+ * does not drain them. Drains pause while the transport is not ready and resume once
+ * it is, so responses wait here rather than in the transport buffers. Past that limit
+ * everything pending is dropped and reported, and the stream ends with
+ * {@code RESOURCE_EXHAUSTED}, so the subscriber logs in again with the last sequence
+ * number it saw and is replayed what it missed, or asked to resync.
+ *
+ * @author Andres Almiray
+ */
+class OutboundQueue {
+    static final int BATCH_THRESHOLD = 8;
+    static final int MAX_BATCH_SIZE = 256;
+    static final long LINGER_MICROS = 2_000;
+    static final int MAX_PENDING = 16 * MAX_BATCH_SIZE;
+
+    private final StreamObserver<Response> observer;
+    private final ScheduledExecutorService executor;
+    private final IntConsumer onDrop;
+    private final Runnable onFailure;
+    private final Deque<Response> pending = new ArrayDeque<>();
+    private final Map<String, Response> conflated = new LinkedHashMap<>();
+    private final Object lock = new Object();
+
+    private boolean draining;
+    private boolean batching;
+    private boolean closed;
+    private boolean failed;
+    private volatile boolean exhausted;
+
+    OutboundQueue(@Nonnull StreamObserver<Response> observer, @Nonnull ScheduledExecutorService executor, @Nonnull IntConsumer onDrop, @Nonnull Runnable onFailure) {
+        this.observer = observer;
+        this.executor = executor;
+        this.onDrop = onDrop;
+        this.onFailure = onFailure;
+        if (observer instanceof ServerCallStreamObserver) {
+            ((ServerCallStreamObserver<Response>) observer).setOnReadyHandler(this::onReady);
+        }
+    }
+
+    void send(@Nonnull Response response) {
+        synchronized (lock) {
+            if (closed || failed || exhausted) {
+                return;
+            }
+            if (draining || batching || hasPending() || !isReady()) {
+                enqueue(response);
+                return;
+            }
+            draining = true;
+        }
+
+        writeThrough(response);
+    }
+
+    void conflate(@Nonnull String key, @Nonnull Response response) {
+        synchronized (lock) {
+            if (closed || failed || exhausted) {
+                return;
+            }
+            if (draining || batching || hasPending() || !isReady()) {
+                conflated.put(key, response);
+                scheduleDrain();
+                return;
+            }
+            draining = true;
+        }
+
+        writeThrough(response);
+    }
+
+    /**
+     * Completes the stream once every pending response has been written.
+     */
+    void close() {
+        synchronized (lock) {
+            if (closed || failed) {
+                return;
+            }
+            closed = true;
+            if (!draining && !hasPending() && !exhausted) {
+                complete();
+            }
+        }
+    }
+
+    private void writeThrough(@Nonnull Response response) {
+        // fast path: nothing queued, write on the caller's thread
+        write(response);
+        synchronized (lock) {
+            draining = false;
+            if (hasPending() || exhausted) {
+                scheduleDrain();
+            } else if (closed) {
+                complete();
+            }
+        }
+    }
+
+    private void enqueue(@Nonnull Response response) {
+        if (pending.size() >= MAX_PENDING) {
+            exhausted = true;
+            onDrop.accept(pending.size() + 1);
+            pending.clear();
+            conflated.clear();
+            // the stream is ended by the drain, as it owns the observer
+            scheduleDrain();
+            return;
+        }
+        pending.add(response);
+        if (pending.size() >= BATCH_THRESHOLD || !isReady()) {
+            batching = true;
+        }
+        scheduleDrain();
+    }
+
+    private boolean hasPending() {
+        return !pending.isEmpty() || !conflated.isEmpty();
+    }
+
+    private void scheduleDrain() {
+        if (draining) {
+            return;
+        }
+        draining = true;
+        executor.schedule(this::drain, batching ? LINGER_MICROS : 0, TimeUnit.MICROSECONDS);
+    }
+
+    private void onReady() {
+        synchronized (lock) {
+            if (hasPending()) {
+                scheduleDrain();
+            }
+        }
+    }
+
+    private void drain() {
+        List<Response> responses = new ArrayList<>();
+        synchronized (lock) {
+            if (!exhausted && !isReady()) {
+                // resumed by onReady once the transport has room again
+                draining = false;
+                return;
+            }
+            while (!pending.isEmpty() && responses.size() < MAX_BATCH_SIZE) {
+                responses.add(pending.poll());
+            }
+            Iterator<Response> latest = conflated.values().iterator();
+            while (latest.hasNext() && responses.size() < MAX_BATCH_SIZE) {
+                responses.add(latest.next());
+                latest.remove();
+            }
+        }
+
+        if (exhausted) {
+            exhaust();
+            return;
+        }
+        if (responses.size() == 1) {
+            write(responses.get(0));
+        } else if (responses.size() > 1) {
+            write(Response.newBuilder()
+                .setType(Response.Type.BATCH)
+                .setBatch(ResponseBatch.newBuilder().addAllResponses(responses))
+                .build());
+        }
+
+        synchronized (lock) {
+            draining = false;
+            if (responses.size() <= 1 && isReady()) {
+                batching = false;
+            }
+            if (hasPending() || exhausted) {
+                scheduleDrain();
+            } else if (closed) {
+                complete();
+            }
+        }
+    }
+
+    /**
+     * Ends the stream of a subscriber that fell too far behind.
+     */
+    private void exhaust() {
+        try {
+            observer.onError(Status.RESOURCE_EXHAUSTED
+                .withDescription("More than " + MAX_PENDING + " responses pending")
+                .asRuntimeException());
+        } catch (StatusRuntimeException e) {
+            // the call is gone already
+        }
+        fail();
+    }
+
+    private void write(@Nonnull Response response) {
+        try {
+            observer.onNext(response);
+        } catch (StatusRuntimeException e) {
+            fail();
+        }
+    }
+
+    /**
+     * Discards everything pending and reports the failure, at most once.
+     */
+    void fail() {
+        synchronized (lock) {
+            if (failed) {
+                return;
+            }
+            failed = true;
+            pending.clear();
+            conflated.clear();
+        }
+        onFailure.run();
+    }
+
+    private void complete() {
+        if (!failed) {
+            observer.onCompleted();
+        }
+    }
+
+    private boolean isReady() {
+        return !(observer instanceof ServerCallStreamObserver) || ((ServerCallStreamObserver<Response>) observer).isReady();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat02.server.impl;
+
+import java.util.Arrays;
+
+/**
+ * Ascending list of document ids backed by a primitive array. Ids are appended at
+ * the tail and expire from the head, so both operations are amortized constant time.
+ * Instances are not thread-safe; callers must provide their own locking.
+ *
+ * @author Andres Almiray
+ */
+class PostingList {
+    private static final int INITIAL_CAPACITY = 4;
+
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private int head;
+    private int tail;
+
+    void add(int id) {
+        if (tail == ids.length) {
+            resize(size() * 2 > ids.length ? ids.length * 2 : ids.length);
+        }
+        ids[tail++] = id;
+    }
+
+    /**
+     * Removes {@code id} if it is the oldest entry.
+     */
+    boolean removeFirst(int id) {
+        if (head == tail || ids[head] != id) {
+            return false;
+        }
+        head++;
+        if (ids.length > INITIAL_CAPACITY && size() < ids.length / 4) {
+            resize(ids.length / 2);
+        }
+        return true;
+    }
+
+    boolean contains(int id) {
+        return Arrays.binarySearch(ids, head, tail, id) >= 0;
+    }
+
+    int get(int index) {
+        return ids[head + index];
+    }
+
+    int size() {
+        return tail - head;
+    }
+
+    boolean isEmpty() {
+        return head == tail;
+    }
+
+    private void resize(int capacity) {
+        int size = size();
+        int[] target = capacity == ids.length ? ids : new int[capacity];
+        System.arraycopy(ids, head, target, 0, size);
+        ids = target;
+        head = 0;
+        tail = size;
+    }
+}
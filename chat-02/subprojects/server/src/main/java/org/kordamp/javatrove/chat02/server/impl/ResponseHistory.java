@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat02.server.impl;
+
+import org.kordamp.javatrove.chat02.grpc.Response;
+
+import javax.annotation.Nonnull;
+import java.util.function.Consumer;
+
+/**
+ * Bounded ring buffer holding the most recent broadcast responses.
+ * Each appended response is stamped with the next sequence number.
+ * Instances are not thread-safe; callers must provide their own locking.
+ *
+ * @author Andres Almiray
+ */
+class ResponseHistory {
+    private final Response[] responses;
+    private long lastSequence;
+
+    ResponseHistory(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("History capacity must be greater than 0");
+        }
+        this.responses = new Response[capacity];
+    }
+
+    @Nonnull
+    Response append(@Nonnull Response.Builder builder) {
+        Response response = builder.setSequence(++lastSequence).build();
+        responses[indexOf(lastSequence)] = response;
+        return response;
+    }
+
+    long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Whether every response sent after {@code lastSeen} is still retained.
+     */
+    boolean canReplayFrom(long lastSeen) {
+        long firstRetained = Math.max(1, lastSequence - responses.length + 1);
+        return lastSeen <= lastSequence && lastSeen + 1 >= firstRetained;
+    }
+
+    void replayFrom(long lastSeen, @Nonnull Consumer<Response> consumer) {
+        for (long sequence = lastSeen + 1; sequence <= lastSequence; sequence++) {
+            consumer.accept(responses[indexOf(sequence)]);
+        }
+    }
+
+    private int indexOf(long sequence) {
+        return (int) (sequence % responses.length);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat02.server.impl;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Hands out fixed-size segments carved from direct (off-heap) buffers.
+ * Backing buffers are allocated lazily, one chunk at a time, up to a fixed capacity.
+ *
+ * @author Andres Almiray
+ */
+class SegmentPool {
+    private static final int CHUNK_SIZE = 1024 * 1024;
+
+    private final long capacity;
+    private final int segmentSize;
+    private final Deque<ByteBuffer> free = new ArrayDeque<>();
+    private long allocated;
+
+    SegmentPool(long capacity, int segmentSize) {
+        if (segmentSize < 1 || segmentSize > CHUNK_SIZE) {
+            throw new IllegalArgumentException("Segment size must be between 1 and " + CHUNK_SIZE);
+        }
+        this.capacity = capacity;
+        this.segmentSize = segmentSize;
+    }
+
+    int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Returns an empty segment, or {@code null} if the pool is exhausted.
+     */
+    synchronized ByteBuffer acquire() {
+        if (free.isEmpty() && allocated < capacity) {
+            int size = (int) Math.min(CHUNK_SIZE, capacity - allocated) / segmentSize * segmentSize;
+            if (size > 0) {
+                ByteBuffer chunk = ByteBuffer.allocateDirect(size);
+                for (int offset = 0; offset < size; offset += segmentSize) {
+                    chunk.limit(offset + segmentSize).position(offset);
+                    free.add(chunk.slice());
+                }
+                allocated += size;
+            }
+        }
+        return free.poll();
+    }
+
+    synchronized void release(ByteBuffer segment) {
+        segment.clear();
+        free.push(segment);
+    }
+}
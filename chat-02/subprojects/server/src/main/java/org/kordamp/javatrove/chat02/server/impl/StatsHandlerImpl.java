@@ -0,0 +1,41 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat02.server.impl;
+
+import com.google.protobuf.Empty;
+import io.grpc.stub.StreamObserver;
+import org.kordamp.javatrove.chat02.grpc.StatsGrpc;
+import org.kordamp.javatrove.chat02.grpc.StatsReport;
+import org.kordamp.javatrove.chat02.server.MetricsInterceptor;
+import org.kordamp.javatrove.chat02.server.StatsHandler;
+
+import javax.inject.Inject;
+
+/**
+ * @author Andres Almiray
+ */
+public class StatsHandlerImpl extends StatsGrpc.StatsImplBase implements StatsHandler {
+    @Inject private MetricsInterceptor metricsInterceptor;
+
+    @Override
+    public void stats(Empty request, StreamObserver<StatsReport> responseObserver) {
+        responseObserver.onNext(metricsInterceptor.snapshot());
+        responseObserver.onCompleted();
+    }
+}
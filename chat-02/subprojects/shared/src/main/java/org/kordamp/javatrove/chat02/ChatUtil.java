@@ -25,6 +25,9 @@ import static org.kordamp.javatrove.chat02.Command.Type.DISCONNECT;
 import static org.kordamp.javatrove.chat02.Command.Type.LOGIN;
 import static org.kordamp.javatrove.chat02.Command.Type.LOGOUT;
 import static org.kordamp.javatrove.chat02.Command.Type.MESSAGE;
+import static org.kordamp.javatrove.chat02.Command.Type.PRESENCE;
+import static org.kordamp.javatrove.chat02.Command.Type.RESYNC;
+import static org.kordamp.javatrove.chat02.Command.Type.TYPING;
 
 /**
  * @author Andres Almiray
@@ -32,7 +35,28 @@ import static org.kordamp.javatrove.chat02.Command.Type.MESSAGE;
 public class ChatUtil {
     public static final String SERVER_PORT_KEY = "_SERVER_PORT_";
     public static final int SERVER_PORT = 54555;
+    public static final String SERVER_PORT_PROPERTY = "chat.port";
+    public static final String CLUSTER_NODES_KEY = "_CLUSTER_NODES_";
+    public static final String CLUSTER_NODES_PROPERTY = "chat.cluster.nodes";
+    public static final String NODE_ADDRESS_KEY = "_NODE_ADDRESS_";
+    public static final String NODE_ADDRESS_PROPERTY = "chat.node.address";
+    public static final String DEFAULT_ROOM = "lobby";
     public static final String NAME_SEPARATOR = ">";
+    public static final String HISTORY_SIZE_KEY = "_HISTORY_SIZE_";
+    public static final int HISTORY_SIZE = 1024;
+    public static final String MAILBOX_CAPACITY_KEY = "_MAILBOX_CAPACITY_";
+    public static final long MAILBOX_CAPACITY = 64L * 1024 * 1024;
+    public static final String MAILBOX_SIZE_KEY = "_MAILBOX_SIZE_";
+    public static final int MAILBOX_SIZE = 64 * 1024;
+    public static final String MAILBOX_TTL_KEY = "_MAILBOX_TTL_";
+    public static final long MAILBOX_TTL = 60L * 60 * 1000;
+    public static final String SEARCH_RETENTION_KEY = "_SEARCH_RETENTION_";
+    public static final int SEARCH_RETENTION = 1024 * 1024;
+    public static final int SEARCH_LIMIT = 50;
+    public static final String TYPING_STATE = "typing";
+    public static final String IDLE_STATE = "idle";
+    public static final String ONLINE_STATE = "online";
+    public static final String AWAY_STATE = "away";
 
     @Nonnull
     public static String toSHA1(@Nonnull String content) {
@@ -71,6 +95,28 @@ public class ChatUtil {
             .build();
     }
 
+    public static Command resyncCommand() {
+        return Command.builder()
+            .type(RESYNC)
+            .build();
+    }
+
+    public static Command typingCommand(String name, String state) {
+        return Command.builder()
+            .type(TYPING)
+            .payload(name)
+            .state(state)
+            .build();
+    }
+
+    public static Command presenceCommand(String name, String state) {
+        return Command.builder()
+            .type(PRESENCE)
+            .payload(name)
+            .state(state)
+            .build();
+    }
+
     public static Command disconnectCommand() {
         return Command.builder()
             .type(DISCONNECT)
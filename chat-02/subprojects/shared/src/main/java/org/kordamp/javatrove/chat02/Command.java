@@ -30,17 +30,22 @@ public class Command {
         LOGIN,
         LOGOUT,
         MESSAGE,
+        RESYNC,
+        TYPING,
+        PRESENCE,
         DISCONNECT;
     }
 
     private Type type;
     private String payload;
+    private String state;
 
     @Builder
-    public static Command create(Type type, String payload) {
+    public static Command create(Type type, String payload, String state) {
         Command cmd = new Command();
         cmd.setType(type);
         cmd.setPayload(payload);
+        cmd.setState(state);
         return cmd;
     }
 }
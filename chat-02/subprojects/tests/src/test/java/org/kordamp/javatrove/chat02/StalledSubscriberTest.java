@@ -0,0 +1,151 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat02;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.junit.After;
+import org.junit.Test;
+import org.kordamp.javatrove.chat02.client.AppModule;
+import org.kordamp.javatrove.chat02.client.ChatClient;
+import org.kordamp.javatrove.chat02.client.ClientCommandDispatcher;
+import org.kordamp.javatrove.chat02.server.ChatServer;
+import org.kordamp.javatrove.chat02.server.MetricsInterceptor;
+import org.kordamp.javatrove.chat02.server.ServerModule;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static com.google.inject.name.Names.named;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * A subscriber that stops draining its stream for longer than the server is willing to
+ * queue responses for it has its stream ended, logs in again and is asked to resync,
+ * after which it receives new messages as usual.
+ *
+ * @author Andres Almiray
+ */
+public class StalledSubscriberTest {
+    private static final int PORT = 56500;
+    private static final int MESSAGES = 6000;
+    private static final int MESSAGE_SIZE = 4096;
+
+    private final List<Command> received = new CopyOnWriteArrayList<>();
+    private final CountDownLatch stalled = new CountDownLatch(1);
+    private ChatServer server;
+    private ChatClient alice;
+    private ChatClient bob;
+
+    @After
+    public void cleanup() {
+        stalled.countDown();
+        if (alice != null) {
+            alice.logout("Alice");
+        }
+        if (bob != null) {
+            bob.logout("Bob");
+        }
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void stalled_subscriber_resyncs() throws Exception {
+        // given:
+        Injector serverInjector = Guice.createInjector(new ServerModule() {
+            @Override
+            protected void bindServerPort() {
+                bindConstant()
+                    .annotatedWith(named(ChatUtil.SERVER_PORT_KEY))
+                    .to(PORT);
+            }
+        });
+        server = serverInjector.getInstance(ChatServer.class);
+        // start() blocks until the server shuts down
+        Thread serverThread = new Thread(() -> {
+            try {
+                server.start();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        serverThread.setDaemon(true);
+        serverThread.start();
+        await().atMost(10, SECONDS).until(() -> isListening(PORT));
+        alice = login("Alice", command -> { });
+        bob = login("Bob", command -> {
+            received.add(command);
+            if (command.getType() == Command.Type.MESSAGE) {
+                waitFor(stalled);
+            }
+        });
+
+        // when: Bob stops reading while Alice keeps sending
+        String padding = new String(new char[MESSAGE_SIZE]).replace('\0', 'x');
+        for (int i = 0; i < MESSAGES; i++) {
+            alice.send("Alice", i + padding);
+        }
+        MetricsInterceptor metrics = serverInjector.getInstance(MetricsInterceptor.class);
+        await().atMost(30, SECONDS).until(() -> metrics.snapshot().getDroppedResponses() > 0);
+        stalled.countDown();
+
+        // then:
+        await().atMost(10, SECONDS).until(() -> received.stream().anyMatch(command -> command.getType() == Command.Type.RESYNC));
+
+        // when:
+        alice.send("Alice", "caught up");
+
+        // then:
+        await().atMost(10, SECONDS).until(() -> received.stream().anyMatch(command -> "Alice> caught up".equals(command.getPayload())));
+    }
+
+    private ChatClient login(String name, ClientCommandDispatcher dispatcher) {
+        ChatClient client = Guice.createInjector(new AppModule() {
+            @Override
+            protected void bindCommandDispatcher() {
+                bind(ClientCommandDispatcher.class)
+                    .toInstance(dispatcher);
+            }
+        }).getInstance(ChatClient.class);
+        client.login("localhost", PORT, name);
+        return client;
+    }
+
+    private static boolean isListening(int port) {
+        try (Socket socket = new Socket("localhost", port)) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void waitFor(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
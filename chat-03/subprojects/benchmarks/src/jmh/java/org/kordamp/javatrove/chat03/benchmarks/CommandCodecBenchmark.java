@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat03.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.kordamp.javatrove.chat03.Command;
+import org.kordamp.javatrove.chat03.CommandCodec;
+import org.kordamp.javatrove.chat03.impl.MessagePackCommandCodec;
+import org.kordamp.javatrove.chat03.impl.ObjectMapperProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.kordamp.javatrove.chat03.ChatUtil.messageCommand;
+
+/**
+ * Compares the Jackson mapper with the hand-written codec, for both directions.
+ *
+ * @author Andres Almiray
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CommandCodecBenchmark {
+    @State(Scope.Benchmark)
+    public static class CodecState {
+        private ObjectMapper objectMapper;
+        private CommandCodec commandCodec;
+        private Command command;
+        private byte[] bytes;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            objectMapper = new ObjectMapperProvider().get();
+            commandCodec = new MessagePackCommandCodec();
+            command = messageCommand("benchmark> the quick brown fox jumps over the lazy dog");
+            bytes = commandCodec.encode(command);
+        }
+    }
+
+    @Benchmark
+    public byte[] encodeObjectMapper(CodecState state) throws Exception {
+        return state.objectMapper.writeValueAsBytes(state.command);
+    }
+
+    @Benchmark
+    public byte[] encodeCodec(CodecState state) {
+        return state.commandCodec.encode(state.command);
+    }
+
+    @Benchmark
+    public Command decodeObjectMapper(CodecState state) throws Exception {
+        return state.objectMapper.readValue(state.bytes, Command.class);
+    }
+
+    @Benchmark
+    public Command decodeCodec(CodecState state) throws Exception {
+        return state.commandCodec.decode(state.bytes);
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat03.benchmarks;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.kordamp.javatrove.chat03.ChatUtil;
+import org.kordamp.javatrove.chat03.Command;
+import org.kordamp.javatrove.chat03.impl.MessagePackCommandCodec;
+import org.kordamp.javatrove.chat03.server.ChatServer;
+import org.kordamp.javatrove.chat03.server.ServerModule;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.zeromq.ZMQ;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.inject.name.Names.named;
+import static org.kordamp.javatrove.chat03.ChatUtil.envelope;
+import static org.kordamp.javatrove.chat03.ChatUtil.messageCommand;
+
+/**
+ * Measures how many messages per second the server acknowledges with a number of
+ * concurrent REQ clients. Running with a single worker reproduces the throughput of
+ * handling one request at a time.
+ *
+ * @author Andres Almiray
+ */
+public class ServerThroughputBenchmark {
+    private static final int PORT = 54655;
+    private static final int BURST = 100;
+
+    @State(Scope.Benchmark)
+    public static class ServerState {
+        @Param({"1", "4"})
+        public int workers;
+
+        @Param({"1", "10", "100"})
+        public int clients;
+
+        private ChatServer server;
+        private ZMQ.Context context;
+        private ExecutorService executorService;
+        private final List<Callable<Void>> bursts = new ArrayList<>();
+        private final List<ZMQ.Socket> sockets = new ArrayList<>();
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            Injector injector = Guice.createInjector(new ServerModule() {
+                @Override
+                protected void bindServerPort() {
+                    bindConstant()
+                        .annotatedWith(named(ChatUtil.SERVER_PORT_KEY))
+                        .to(PORT);
+                }
+
+                @Override
+                protected void bindWorkers() {
+                    bindConstant()
+                        .annotatedWith(named(ChatUtil.WORKERS_KEY))
+                        .to(workers);
+                }
+            });
+            server = injector.getInstance(ChatServer.class);
+            server.start();
+
+            Command command = messageCommand("benchmark> hello");
+            byte[] envelope = envelope(command, "benchmark").toBytes();
+            byte[] message = new MessagePackCommandCodec().encode(command);
+            context = ZMQ.context(1);
+            executorService = Executors.newFixedThreadPool(clients);
+            for (int i = 0; i < clients; i++) {
+                ZMQ.Socket client = context.socket(ZMQ.REQ);
+                client.setLinger(0);
+                client.connect("tcp://localhost:" + PORT);
+                sockets.add(client);
+                bursts.add(() -> {
+                    for (int m = 0; m < BURST; m++) {
+                        client.sendMore(envelope);
+                        client.send(message);
+                        client.recv(0);
+                    }
+                    return null;
+                });
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            executorService.shutdownNow();
+            sockets.forEach(ZMQ.Socket::close);
+            context.term();
+            server.stop();
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long messages;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void send(ServerState state, Counters counters) throws Exception {
+        for (Future<Void> burst : state.executorService.invokeAll(state.bursts)) {
+            burst.get();
+        }
+        counters.messages += (long) state.clients * BURST;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat03.benchmarks;
+
+import org.kordamp.javatrove.chat03.Command;
+import org.kordamp.javatrove.chat03.CommandCodec;
+import org.kordamp.javatrove.chat03.impl.MessagePackCommandCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.zeromq.ZMQ;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.kordamp.javatrove.chat03.ChatUtil.messageCommand;
+import static org.kordamp.javatrove.chat03.ChatUtil.topic;
+
+/**
+ * Measures what a subscriber interested in a single room pays for a burst of
+ * publications spread evenly over a number of rooms, when it subscribes to every
+ * publication and discards foreign rooms after decoding, and when it subscribes to
+ * the topic of its room only. In the latter case the publisher filters, so the
+ * subscriber receives and decodes only {@code 1/rooms} of the burst.
+ *
+ * @author Andres Almiray
+ */
+public class TopicFilterBenchmark {
+    private static final String ENDPOINT = "tcp://localhost:54755";
+    private static final int BURST = 1000;
+    private static final String ROOM = "room-0";
+
+    public enum Filter {
+        ALL,
+        TOPIC
+    }
+
+    @State(Scope.Benchmark)
+    public static class PubSubState {
+        @Param({"1", "10", "100"})
+        public int rooms;
+
+        @Param({"ALL", "TOPIC"})
+        public Filter filter;
+
+        private ZMQ.Context context;
+        private ZMQ.Socket publisher;
+        private ZMQ.Socket subscriber;
+        private CommandCodec commandCodec;
+        private byte[][] topics;
+        private byte[][] messages;
+        private int expected;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            commandCodec = new MessagePackCommandCodec();
+            expected = filter == Filter.ALL ? BURST : (BURST + rooms - 1) / rooms;
+            topics = new byte[rooms][];
+            messages = new byte[rooms][];
+            for (int i = 0; i < rooms; i++) {
+                topics[i] = topic("room-" + i);
+                messages[i] = commandCodec.encode(messageCommand("benchmark> hello", "room-" + i));
+            }
+
+            context = ZMQ.context(1);
+            publisher = context.socket(ZMQ.PUB);
+            publisher.setSndHWM(0);
+            publisher.bind(ENDPOINT);
+            subscriber = context.socket(ZMQ.SUB);
+            subscriber.setRcvHWM(0);
+            subscriber.subscribe(filter == Filter.ALL ? new byte[0] : topics[0]);
+            subscriber.connect(ENDPOINT);
+
+            // wait for the subscription to reach the publisher
+            while (true) {
+                publisher.sendMore(topics[0]);
+                publisher.send(messages[0]);
+                if (subscriber.recv(ZMQ.DONTWAIT) != null) {
+                    subscriber.recv();
+                    break;
+                }
+                Thread.sleep(10);
+            }
+            Thread.sleep(100);
+            while (subscriber.recv(ZMQ.DONTWAIT) != null) {
+                // discard the remaining handshake publications
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            publisher.close();
+            subscriber.close();
+            context.term();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void burst(PubSubState state, Blackhole blackhole) throws Exception {
+        for (int i = 0; i < BURST; i++) {
+            int room = i % state.rooms;
+            state.publisher.sendMore(state.topics[room]);
+            state.publisher.send(state.messages[room]);
+        }
+
+        for (int i = 0; i < state.expected; i++) {
+            state.subscriber.recv();
+            byte[] bytes = state.subscriber.recv();
+            Command command = state.commandCodec.decode(bytes);
+            if (ROOM.equals(command.getRoom())) {
+                blackhole.consume(command);
+            }
+        }
+    }
+}
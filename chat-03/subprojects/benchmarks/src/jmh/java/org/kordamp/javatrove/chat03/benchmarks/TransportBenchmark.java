@@ -0,0 +1,161 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat03.benchmarks;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.kordamp.javatrove.chat03.ChatUtil;
+import org.kordamp.javatrove.chat03.Command;
+import org.kordamp.javatrove.chat03.impl.MessagePackCommandCodec;
+import org.kordamp.javatrove.chat03.server.ChatServer;
+import org.kordamp.javatrove.chat03.server.ServerModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.zeromq.ZMQ;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.google.inject.name.Names.named;
+import static org.kordamp.javatrove.chat03.ChatUtil.DEFAULT_ROOM;
+import static org.kordamp.javatrove.chat03.ChatUtil.connectEndpoint;
+import static org.kordamp.javatrove.chat03.ChatUtil.envelope;
+import static org.kordamp.javatrove.chat03.ChatUtil.messageCommand;
+import static org.kordamp.javatrove.chat03.ChatUtil.topic;
+
+/**
+ * Measures the command path, a request until the server replies, and the publish
+ * path, a request until its publication reaches a subscriber, over each transport
+ * and with a number of ZeroMQ I/O threads. Client sockets share the context of the
+ * server, as the inproc transport requires.
+ *
+ * @author Andres Almiray
+ */
+public class TransportBenchmark {
+    private static final int PORT = 54855;
+    private static final int HANDSHAKE_TIMEOUT_MILLIS = 100;
+
+    @State(Scope.Benchmark)
+    public static class TransportState {
+        @Param({"tcp", "ipc", "inproc"})
+        public String transport;
+
+        @Param({"1", "2"})
+        public int ioThreads;
+
+        private ChatServer server;
+        private ZMQ.Context context;
+        private ZMQ.Socket client;
+        private ZMQ.Socket subscriber;
+        private byte[] envelope;
+        private byte[] message;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            context = ZMQ.context(ioThreads);
+            Injector injector = Guice.createInjector(new ServerModule() {
+                @Override
+                protected void bindServerPort() {
+                    bindConstant()
+                        .annotatedWith(named(ChatUtil.SERVER_PORT_KEY))
+                        .to(PORT);
+                }
+
+                @Override
+                protected void bindTransport() {
+                    bindConstant()
+                        .annotatedWith(named(ChatUtil.TRANSPORT_KEY))
+                        .to(transport);
+                }
+
+                @Override
+                protected void bindContext() {
+                    bind(ZMQ.Context.class)
+                        .toInstance(context);
+                }
+            });
+            server = injector.getInstance(ChatServer.class);
+            server.start();
+
+            Command command = messageCommand("benchmark> hello");
+            envelope = envelope(command, "benchmark").toBytes();
+            message = new MessagePackCommandCodec().encode(command);
+
+            client = context.socket(ZMQ.REQ);
+            client.setLinger(0);
+            client.connect(connectEndpoint(transport, "localhost", PORT));
+            subscriber = context.socket(ZMQ.SUB);
+            subscriber.setLinger(0);
+            subscriber.subscribe(topic(DEFAULT_ROOM));
+            subscriber.connect(connectEndpoint(transport, "localhost", PORT + 1));
+
+            // wait for the subscription to reach the publisher
+            subscriber.setReceiveTimeOut(HANDSHAKE_TIMEOUT_MILLIS);
+            do {
+                request();
+            } while (subscriber.recv() == null);
+            while (subscriber.hasReceiveMore() || subscriber.recv(ZMQ.DONTWAIT) != null) {
+                subscriber.recv(ZMQ.DONTWAIT);
+            }
+            subscriber.setReceiveTimeOut(-1);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            client.close();
+            subscriber.close();
+            // terminates the shared context
+            server.stop();
+        }
+
+        private byte[] request() {
+            client.sendMore(envelope);
+            client.send(message);
+            return client.recv();
+        }
+
+        private byte[] receivePublication() {
+            subscriber.recv();
+            subscriber.recv();
+            return subscriber.recv();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public byte[] command(TransportState state) {
+        return state.request();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public byte[] publish(TransportState state) {
+        state.request();
+        return state.receivePublication();
+    }
+}
@@ -18,8 +18,9 @@
  */
 package org.kordamp.javatrove.chat03.client;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.jdeferred.DeferredManager;
+import org.kordamp.javatrove.chat03.ChatUtil;
+import org.kordamp.javatrove.chat03.CommandCodec;
 import org.kordamp.javatrove.chat03.client.controller.AppController;
 import org.kordamp.javatrove.chat03.client.impl.ChatClientImpl;
 import org.kordamp.javatrove.chat03.client.impl.ClientCommandDispatcherImpl;
@@ -32,7 +33,9 @@ import org.kordamp.javatrove.chat03.client.model.AppModel;
 import org.kordamp.javatrove.chat03.client.util.ApplicationEventBus;
 import org.kordamp.javatrove.chat03.client.util.ApplicationEventHandler;
 import org.kordamp.javatrove.chat03.client.view.AppView;
-import org.kordamp.javatrove.chat03.impl.ObjectMapperProvider;
+import org.kordamp.javatrove.chat03.impl.ContextProvider;
+import org.kordamp.javatrove.chat03.impl.MessagePackCommandCodec;
+import org.zeromq.ZMQ;
 import ru.vyarus.guice.ext.ExtAnnotationsModule;
 
 import javax.inject.Singleton;
@@ -53,8 +56,16 @@ public class AppModule extends ExtAnnotationsModule {
     protected final void configure() {
         super.configure();
         bindExecutorService();
+        bindTransport();
+        bindIoThreads();
+        bindContext();
+        bindBroker();
+        bindFailover();
+        bindSubscriberHwm();
+        bindCredits();
+        bindTrace();
         bindChatClient();
-        bindObjectMapper();
+        bindCommandCodec();
         bindCommandDispatcher();
         bindLoginCommandHandler();
         bindLogoutCommandHandler();
@@ -73,14 +84,61 @@ public class AppModule extends ExtAnnotationsModule {
             .toInstance(Executors.newFixedThreadPool(2));
     }
 
+    protected void bindTransport() {
+        bindConstant()
+            .annotatedWith(named(ChatUtil.TRANSPORT_KEY))
+            .to(System.getProperty(ChatUtil.TRANSPORT_PROPERTY, ChatUtil.TRANSPORT));
+    }
+
+    protected void bindIoThreads() {
+        bindConstant()
+            .annotatedWith(named(ChatUtil.IO_THREADS_KEY))
+            .to(Integer.getInteger(ChatUtil.IO_THREADS_PROPERTY, 2));
+    }
+
+    protected void bindContext() {
+        bind(ZMQ.Context.class)
+            .toProvider(ContextProvider.class);
+    }
+
+    protected void bindBroker() {
+        bindConstant()
+            .annotatedWith(named(ChatUtil.BROKER_KEY))
+            .to(System.getProperty(ChatUtil.BROKER_PROPERTY, ""));
+    }
+
+    protected void bindFailover() {
+        bindConstant()
+            .annotatedWith(named(ChatUtil.FAILOVER_KEY))
+            .to(System.getProperty(ChatUtil.FAILOVER_PROPERTY, ""));
+    }
+
+    protected void bindSubscriberHwm() {
+        bindConstant()
+            .annotatedWith(named(ChatUtil.SUBSCRIBER_HWM_KEY))
+            .to(Integer.getInteger(ChatUtil.SUBSCRIBER_HWM_PROPERTY, ChatUtil.SUBSCRIBER_HWM));
+    }
+
+    protected void bindCredits() {
+        bindConstant()
+            .annotatedWith(named(ChatUtil.CREDITS_KEY))
+            .to(Integer.getInteger(ChatUtil.CREDITS_PROPERTY, ChatUtil.CREDITS));
+    }
+
+    protected void bindTrace() {
+        bindConstant()
+            .annotatedWith(named(ChatUtil.TRACE_KEY))
+            .to(Boolean.getBoolean(ChatUtil.TRACE_PROPERTY));
+    }
+
     protected void bindChatClient() {
         bind(ChatClient.class)
             .to(ChatClientImpl.class);
     }
 
-    protected void bindObjectMapper() {
-        bind(ObjectMapper.class)
-            .toProvider(ObjectMapperProvider.class)
+    protected void bindCommandCodec() {
+        bind(CommandCodec.class)
+            .to(MessagePackCommandCodec.class)
             .in(Singleton.class);
     }
 
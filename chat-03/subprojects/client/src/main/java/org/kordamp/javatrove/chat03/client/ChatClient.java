@@ -24,6 +24,8 @@ package org.kordamp.javatrove.chat03.client;
 public interface ChatClient {
     void login(String server, int port, String name);
 
+    void login(String server, int port, String name, String room);
+
     void logout(String name);
 
     void send(String name, String message);
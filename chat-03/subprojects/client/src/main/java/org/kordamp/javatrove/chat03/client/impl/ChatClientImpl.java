@@ -18,83 +18,624 @@
  */
 package org.kordamp.javatrove.chat03.client.impl;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.kordamp.javatrove.chat03.Command;
+import org.kordamp.javatrove.chat03.CommandCodec;
+import org.kordamp.javatrove.chat03.Envelope;
 import org.kordamp.javatrove.chat03.client.ChatClient;
 import org.kordamp.javatrove.chat03.client.ClientCommandDispatcher;
+import org.kordamp.javatrove.chat03.client.util.ApplicationEventBus;
+import org.kordamp.javatrove.chat03.client.util.ThrowableEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.zeromq.ZMQ;
 
 import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
 
+import static org.kordamp.javatrove.chat03.ChatUtil.BATCH_SIZE;
+import static org.kordamp.javatrove.chat03.ChatUtil.BROKER_KEY;
+import static org.kordamp.javatrove.chat03.ChatUtil.CREDITS_KEY;
+import static org.kordamp.javatrove.chat03.ChatUtil.DEFAULT_ROOM;
+import static org.kordamp.javatrove.chat03.ChatUtil.DUPLICATE_REPLY;
+import static org.kordamp.javatrove.chat03.ChatUtil.FAILOVER_KEY;
 import static org.kordamp.javatrove.chat03.ChatUtil.NAME_SEPARATOR;
+import static org.kordamp.javatrove.chat03.ChatUtil.SUBSCRIBER_HWM_KEY;
+import static org.kordamp.javatrove.chat03.ChatUtil.TRACE_CLIENT_SEND;
+import static org.kordamp.javatrove.chat03.ChatUtil.TRACE_KEY;
+import static org.kordamp.javatrove.chat03.ChatUtil.TRACE_SERVER_PUBLISH;
+import static org.kordamp.javatrove.chat03.ChatUtil.TRACE_SERVER_RECEIVE;
+import static org.kordamp.javatrove.chat03.ChatUtil.TRANSPORT_KEY;
+import static org.kordamp.javatrove.chat03.ChatUtil.addressOf;
+import static org.kordamp.javatrove.chat03.ChatUtil.connectEndpoint;
+import static org.kordamp.javatrove.chat03.ChatUtil.correlation;
+import static org.kordamp.javatrove.chat03.ChatUtil.correlationOf;
+import static org.kordamp.javatrove.chat03.ChatUtil.envelope;
+import static org.kordamp.javatrove.chat03.ChatUtil.epochNanos;
+import static org.kordamp.javatrove.chat03.ChatUtil.epochOf;
 import static org.kordamp.javatrove.chat03.ChatUtil.loginCommand;
 import static org.kordamp.javatrove.chat03.ChatUtil.logoutCommand;
 import static org.kordamp.javatrove.chat03.ChatUtil.messageCommand;
+import static org.kordamp.javatrove.chat03.ChatUtil.originOf;
+import static org.kordamp.javatrove.chat03.ChatUtil.requestIdOf;
+import static org.kordamp.javatrove.chat03.ChatUtil.sequenceOf;
+import static org.kordamp.javatrove.chat03.ChatUtil.sessionOf;
+import static org.kordamp.javatrove.chat03.ChatUtil.stampOf;
+import static org.kordamp.javatrove.chat03.ChatUtil.toBytes;
+import static org.kordamp.javatrove.chat03.ChatUtil.toLong;
+import static org.kordamp.javatrove.chat03.ChatUtil.trace;
+import static org.kordamp.javatrove.chat03.ChatUtil.topic;
 
 /**
+ * Requests are sent over a DEALER socket, so several of them can be in flight at once.
+ * Each request carries a correlation id that the server echoes in its reply. A request
+ * takes one credit, and the reply returns it; callers block only once all credits are
+ * taken. ZeroMQ sockets must not be shared between threads, so callers hand requests
+ * over an inproc socket to the thread that owns all other sockets.
+ * <p>
+ * Requests without a reply are sent again a bounded number of times. Heartbeats keep
+ * track of whether the server is alive; when it misses too many of them the client
+ * fails over to the next configured server and resends whatever is still in flight.
+ * Correlation ids are made of a session, which outlives failover, and a request id, so
+ * that a server dispatches a resent request only once. A server replies to a message
+ * before publishing it, and may not live to publish it, so a message is done once the
+ * publication carrying its correlation id is received rather than when it is replied to. A server that discards a
+ * resent message as a duplicate has published it already; should the publication not
+ * have reached us, it is fetched from the backlog like any other missing one.
+ * <p>
+ * Publications carry a sequence number assigned by the server that published them.
+ * A gap in those numbers is filled from the backlog of that server before delivery
+ * resumes; see {@link PublicationStream}.
+ * <p>
+ * With tracing enabled, requests carry a trace frame that the server stamps as the
+ * request is received and published. The time spent on each hop is recorded in the
+ * histograms returned by {@link #getTraceHistograms()}. Without tracing no frame is
+ * sent, and traced publications of other clients are discarded as they arrive.
+ *
  * @author Andres Almiray
  */
 public class ChatClientImpl implements ChatClient {
     private static final Logger LOG = LoggerFactory.getLogger(ChatClientImpl.class);
     private static final String UNEXPECTED_ERROR = "Unexpected error";
-    private static final String TCP_PREFIX = "tcp://";
     private static final String SEMICOLON = ":";
+    private static final String REQUESTS_ENDPOINT = "inproc://requests-";
+    private static final AtomicLong CLIENT_IDS = new AtomicLong();
+    private static final int SNAPSHOT_TIMEOUT_MILLIS = 2000;
+    private static final long POLL_TIMEOUT_MILLIS = 100;
+    private static final long HEARTBEAT_INTERVAL_MILLIS = 1000;
+    private static final int HEARTBEAT_LIVENESS = 3;
+    private static final long REQUEST_TIMEOUT_MILLIS = 2000;
+    private static final int MAX_RETRIES = 3;
+    private static final long HEARTBEAT_ID = 0;
+    private static final int SUBSCRIBER_INDEX = 0;
+    private static final int REQUESTS_INDEX = 1;
+    private static final int CLIENT_INDEX = 2;
+    private static final int BACKLOGS_INDEX = 3;
 
     @Inject private ExecutorService executorService;
     @Inject private ClientCommandDispatcher clientCommandDispatcher;
-    @Inject private ObjectMapper objectMapper;
+    @Inject private CommandCodec commandCodec;
+    @Inject private Provider<ZMQ.Context> contextProvider;
+    @Inject private ApplicationEventBus eventBus;
 
-    private ZMQ.Socket client;
-    private ZMQ.Socket subscriber;
+    @Inject
+    @Named(TRANSPORT_KEY)
+    private String transport;
+
+    @Inject
+    @Named(BROKER_KEY)
+    private String broker;
+
+    @Inject
+    @Named(FAILOVER_KEY)
+    private String failover;
+
+    @Inject
+    @Named(SUBSCRIBER_HWM_KEY)
+    private int subscriberHwm;
+
+    @Inject
+    @Named(CREDITS_KEY)
+    private int credits;
+
+    @Inject
+    @Named(TRACE_KEY)
+    private boolean tracing;
+
+    private String name;
+    private String room;
+    private ZMQ.Socket requests;
     private ZMQ.Context context;
+    private Semaphore availableCredits;
     private final AtomicBoolean running = new AtomicBoolean();
+    private final Map<TraceHop, LatencyHistogram> traceHistograms = traceHistograms();
+    private final long session = ThreadLocalRandom.current().nextLong();
+    private final AtomicLong correlationIds = new AtomicLong(HEARTBEAT_ID);
+    private final Map<Long, Request> inFlight = new ConcurrentHashMap<>();
+
+    // owned by the thread handling incoming messages once login completes
+    private final Map<String, PublicationStream> streams = new HashMap<>();
+    private final Map<String, ZMQ.Socket> backlogs = new HashMap<>();
+    private final List<String> polledOrigins = new ArrayList<>();
+    private final List<String> servers = new ArrayList<>();
+    private int currentServer;
+    private long joinedAt;
+    private byte[] heartbeat;
+    private long lastReplyAt;
+    private long nextHeartbeatAt;
+    private ZMQ.Socket client;
+    private ZMQ.Socket subscriber;
+    private ZMQ.Socket pendingRequests;
+    private ZMQ.Poller poller;
 
     @Override
     public void login(String server, int port, String name) {
+        login(server, port, name, DEFAULT_ROOM);
+    }
+
+    @Override
+    public void login(String server, int port, String name, String room) {
+        this.name = name;
+        this.room = room;
+        joinedAt = System.currentTimeMillis();
+        servers.add(server + SEMICOLON + port);
+        for (String address : failover.split(",")) {
+            if (!address.trim().isEmpty() && !servers.contains(address.trim())) {
+                servers.add(address.trim());
+            }
+        }
+
         try {
-            context = ZMQ.context(2);
+            context = contextProvider.get();
+            availableCredits = new Semaphore(credits);
             subscriber = context.socket(ZMQ.SUB);
-            client = context.socket(ZMQ.REQ);
+            pendingRequests = context.socket(ZMQ.PULL);
+            requests = context.socket(ZMQ.PUSH);
+            client = context.socket(ZMQ.DEALER);
+            poller = context.poller(4);
+            poller.register(subscriber, ZMQ.Poller.POLLIN);
+            poller.register(pendingRequests, ZMQ.Poller.POLLIN);
+            poller.register(client, ZMQ.Poller.POLLIN);
 
-            subscriber.setRcvHWM(0);
-            subscriber.connect(TCP_PREFIX + server + SEMICOLON + (port + 1));
-            subscriber.subscribe("".getBytes());
+            joinFirstAvailableServer();
+            subscriber.setRcvHWM(subscriberHwm);
+            subscriber.connect(publicationsEndpoint(servers.get(currentServer)));
+            subscriber.subscribe(topic(room));
 
-            client.connect(TCP_PREFIX + server + SEMICOLON + port);
+            String requestsEndpoint = REQUESTS_ENDPOINT + CLIENT_IDS.incrementAndGet();
+            pendingRequests.bind(requestsEndpoint);
+            requests.connect(requestsEndpoint);
+            client.setLinger(0);
+            client.connect(endpoint(servers.get(currentServer), 0));
+            heartbeat = Envelope.builder()
+                .type(Command.Type.HEARTBEAT)
+                .sender(name)
+                .room(room)
+                .build()
+                .toBytes();
+            lastReplyAt = System.currentTimeMillis();
 
             running.set(true);
             executorService.submit(this::handleIncomingMessages);
+        } catch (Exception e) {
+            LOG.error(UNEXPECTED_ERROR, e);
+            closeSockets();
+            requests.close();
+            context.term();
+            throw new IllegalStateException(e);
+        }
 
-            client.send(objectMapper.writeValueAsBytes(loginCommand(name)));
-            client.recv(0);
+        try {
+            request(loginCommand(name, room)).get();
         } catch (Exception e) {
             LOG.error(UNEXPECTED_ERROR, e);
+            terminate();
             throw new IllegalStateException(e);
         }
     }
 
-    private void handleIncomingMessages() {
-        while (running.get()) {
+    private void joinFirstAvailableServer() {
+        for (int i = 0; i < servers.size(); i++) {
             try {
-                byte[] bytes = subscriber.recv();
-                Command command = objectMapper.readValue(bytes, Command.class);
-                clientCommandDispatcher.dispatch(command);
-            } catch (Exception e) {
+                joinStream(servers.get(i));
+                currentServer = i;
+                return;
+            } catch (IllegalStateException e) {
+                LOG.warn(e.getMessage());
+            }
+        }
+        throw new IllegalStateException("No server available at " + servers);
+    }
+
+    private String publicationsEndpoint(String address) {
+        return broker.isEmpty() ? endpoint(address, 1) : endpoint(broker, 1);
+    }
+
+    /**
+     * Endpoint of {@code port + offset} of the server at {@code address}.
+     */
+    private String endpoint(String address, int offset) {
+        int separator = address.lastIndexOf(SEMICOLON);
+        return connectEndpoint(transport, address.substring(0, separator), Integer.parseInt(address.substring(separator + 1)) + offset);
+    }
+
+    /**
+     * Asks the server we log in to for the last sequence number of the room, so that
+     * publications are delivered from that point on. Publications of other servers
+     * seen through a broker are delivered from the first one received.
+     */
+    private void joinStream(String address) {
+        String origin = joinStream(backlog(address), address);
+        if (!origin.equals(address)) {
+            backlogs.put(origin, backlogs.remove(address));
+            polledOrigins.set(polledOrigins.indexOf(address), origin);
+        }
+    }
+
+    /**
+     * Joins the stream of a server we fail over to. Its backlog socket, if any, is keyed
+     * by its origin, which is not known until it replies, so a socket of its own is used.
+     */
+    private void rejoinStream(String address) {
+        ZMQ.Socket backlog = context.socket(ZMQ.DEALER);
+        try {
+            backlog.setLinger(0);
+            backlog.connect(endpoint(address, 2));
+            joinStream(backlog, address);
+        } finally {
+            backlog.close();
+        }
+    }
+
+    /**
+     * @return the origin of the server
+     */
+    private String joinStream(ZMQ.Socket backlog, String address) {
+        backlog.sendMore(topic(room));
+        backlog.send(toBytes(Long.MAX_VALUE));
+        backlog.setReceiveTimeOut(SNAPSHOT_TIMEOUT_MILLIS);
+        byte[] topic = backlog.recv();
+        if (topic == null) {
+            throw new IllegalStateException("No response from " + address);
+        }
+        byte[] header = backlog.recv();
+        backlog.setReceiveTimeOut(-1);
+
+        String origin = originOf(header);
+        streams.computeIfAbsent(origin, o -> newStream(o, sequenceOf(header)));
+        return origin;
+    }
+
+    private void handleIncomingMessages() {
+        try {
+            while (running.get()) {
+                poller.poll(POLL_TIMEOUT_MILLIS);
+                if (!running.get()) {
+                    break;
+                }
+                if (poller.pollin(SUBSCRIBER_INDEX)) {
+                    drain(this::receivePublication);
+                }
+                if (poller.pollin(REQUESTS_INDEX)) {
+                    drain(this::forwardRequest);
+                }
+                if (poller.pollin(CLIENT_INDEX)) {
+                    drain(this::receiveReply);
+                }
+                for (int i = 0; i < polledOrigins.size(); i++) {
+                    if (poller.pollin(BACKLOGS_INDEX + i)) {
+                        receiveBacklog(polledOrigins.get(i));
+                    }
+                }
+                long now = System.currentTimeMillis();
+                streams.values().forEach(stream -> fetch(stream, stream.expire(now)));
+                checkLiveness(now);
+                retryRequests(now);
+            }
+        } catch (Exception e) {
+            if (running.get()) {
                 LOG.error(UNEXPECTED_ERROR, e);
-                terminate();
             }
+        } finally {
+            closeSockets();
+            terminate();
         }
     }
 
+    /**
+     * Handles every message already queued on a socket, up to a batch, as each poll
+     * allocates.
+     */
+    private static void drain(BooleanSupplier receiver) {
+        for (int i = 0; i < BATCH_SIZE && receiver.getAsBoolean(); i++) {
+            // keep receiving
+        }
+    }
+
+    private boolean forwardRequest() {
+        byte[] bytes = pendingRequests.recv(ZMQ.DONTWAIT);
+        if (bytes == null) {
+            return false;
+        }
+        long correlationId = toLong(bytes);
+        Request request = inFlight.get(correlationId);
+        if (request != null) {
+            send(correlationId, request, System.currentTimeMillis());
+        }
+        return true;
+    }
+
+    private void send(long correlationId, Request request, long now) {
+        request.attempts++;
+        request.deadline = now + REQUEST_TIMEOUT_MILLIS;
+        client.sendMore("");
+        client.sendMore(correlation(session, correlationId));
+        client.sendMore(request.envelope);
+        if (tracing) {
+            client.sendMore(request.payload);
+            client.send(trace(epochNanos()));
+        } else {
+            client.send(request.payload);
+        }
+    }
+
+    private boolean receiveReply() {
+        if (client.recv(ZMQ.DONTWAIT) == null) {
+            return false;
+        }
+        long correlationId = requestIdOf(client.recv());
+        boolean duplicate = DUPLICATE_REPLY.equals(client.recvStr());
+        lastReplyAt = System.currentTimeMillis();
+        Request request = inFlight.get(correlationId);
+        if (request == null) {
+            return true;
+        }
+        returnCredit(request);
+        if (!request.awaitsPublication || duplicate) {
+            inFlight.remove(correlationId);
+            request.reply.complete(null);
+        }
+        if (request.awaitsPublication && duplicate) {
+            resync();
+        }
+        return true;
+    }
+
+    /**
+     * A message the server reports as a duplicate has been published, yet we have not
+     * received it, so the backlog of the server is checked for what we missed.
+     */
+    private void resync() {
+        String address = servers.get(currentServer);
+        long now = System.currentTimeMillis();
+        for (PublicationStream stream : streams.values()) {
+            if (addressOf(stream.getOrigin()).equals(address)) {
+                fetch(stream, stream.resync(now));
+            }
+        }
+    }
+
+    /**
+     * A credit is returned once the server has a request, but a message stays in flight,
+     * and is resent, until it is published.
+     */
+    private void returnCredit(Request request) {
+        if (!request.creditReturned) {
+            request.creditReturned = true;
+            availableCredits.release();
+        }
+    }
+
+    private void checkLiveness(long now) {
+        if (now - lastReplyAt > HEARTBEAT_INTERVAL_MILLIS * HEARTBEAT_LIVENESS) {
+            failover(now);
+        }
+        if (now >= nextHeartbeatAt) {
+            nextHeartbeatAt = now + HEARTBEAT_INTERVAL_MILLIS;
+            client.sendMore("");
+            client.sendMore(correlation(session, HEARTBEAT_ID));
+            client.sendMore(heartbeat);
+            client.send(new byte[0]);
+        }
+    }
+
+    /**
+     * Switches requests, and publications unless they come from a broker, over to the
+     * next server. Publications of that server are delivered from the last one it made
+     * before requests are resent to it, so that those we miss while the subscription is
+     * being set up are fetched from its backlog.
+     */
+    private void failover(long now) {
+        String previous = servers.get(currentServer);
+        currentServer = (currentServer + 1) % servers.size();
+        String next = servers.get(currentServer);
+        LOG.warn("No reply from {} within {} ms, failing over to {}", previous, now - lastReplyAt, next);
+
+        client.disconnect(endpoint(previous, 0));
+        client.connect(endpoint(next, 0));
+        if (broker.isEmpty()) {
+            subscriber.disconnect(publicationsEndpoint(previous));
+            subscriber.connect(publicationsEndpoint(next));
+            try {
+                rejoinStream(next);
+            } catch (IllegalStateException e) {
+                LOG.warn(e.getMessage());
+            }
+        }
+        lastReplyAt = now;
+        inFlight.forEach((correlationId, request) -> {
+            if (request.deadline != 0) {
+                send(correlationId, request, now);
+            }
+        });
+    }
+
+    private void retryRequests(long now) {
+        for (Iterator<Map.Entry<Long, Request>> it = inFlight.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Long, Request> entry = it.next();
+            Request request = entry.getValue();
+            if (request.deadline == 0 || now < request.deadline) {
+                continue;
+            }
+            if (request.attempts > MAX_RETRIES) {
+                it.remove();
+                returnCredit(request);
+                request.reply.completeExceptionally(new TimeoutException("No reply after " + request.attempts + " attempts"));
+            } else {
+                LOG.debug("Resending request {}", entry.getKey());
+                send(entry.getKey(), request, now);
+            }
+        }
+    }
+
+    private boolean receivePublication() {
+        if (subscriber.recv(ZMQ.DONTWAIT) == null) {
+            return false;
+        }
+        byte[] header = subscriber.recv();
+        byte[] bytes = subscriber.recv();
+        byte[] trace = subscriber.hasReceiveMore() ? subscriber.recv() : null;
+        long receivedAt = tracing && trace != null ? epochNanos() : 0;
+
+        acknowledge(header);
+        String origin = originOf(header);
+        PublicationStream stream = streams.computeIfAbsent(origin, o -> newStream(o, -1));
+        fetch(stream, stream.offer(sequenceOf(header), bytes, System.currentTimeMillis()));
+        if (receivedAt != 0) {
+            recordTrace(trace, receivedAt, epochNanos());
+        }
+        return true;
+    }
+
+    /**
+     * Publications carry the correlation id of the request they publish, so one of our
+     * own shows that the message with that id went through.
+     */
+    private void acknowledge(byte[] header) {
+        byte[] correlationId = correlationOf(header);
+        if (sessionOf(correlationId) != session) {
+            return;
+        }
+        long requestId = requestIdOf(correlationId);
+        Request request = inFlight.get(requestId);
+        if (request != null && request.awaitsPublication) {
+            inFlight.remove(requestId);
+            returnCredit(request);
+            request.reply.complete(null);
+        }
+    }
+
+    /**
+     * Hops measured between the server and the client compare wall clocks of different
+     * processes, so they are only meaningful while those clocks are synchronized.
+     */
+    private void recordTrace(byte[] trace, long receivedAt, long deliveredAt) {
+        long serverReceive = stampOf(trace, TRACE_SERVER_RECEIVE);
+        long serverPublish = stampOf(trace, TRACE_SERVER_PUBLISH);
+        traceHistograms.get(TraceHop.REQUEST).record(serverReceive - stampOf(trace, TRACE_CLIENT_SEND));
+        traceHistograms.get(TraceHop.DISPATCH).record(serverPublish - serverReceive);
+        traceHistograms.get(TraceHop.FAN_OUT).record(receivedAt - serverPublish);
+        traceHistograms.get(TraceHop.DELIVERY).record(deliveredAt - receivedAt);
+    }
+
+    public Map<TraceHop, LatencyHistogram> getTraceHistograms() {
+        return Collections.unmodifiableMap(traceHistograms);
+    }
+
+    private static Map<TraceHop, LatencyHistogram> traceHistograms() {
+        Map<TraceHop, LatencyHistogram> histograms = new EnumMap<>(TraceHop.class);
+        for (TraceHop hop : TraceHop.values()) {
+            histograms.put(hop, new LatencyHistogram());
+        }
+        return histograms;
+    }
+
+    /**
+     * Publications of a server that started after we joined are all new to us, so they
+     * are delivered from the first one. Other servers are followed from
+     * {@code lastSequence}, or from the first publication received if it is negative.
+     */
+    private PublicationStream newStream(String origin, long lastSequence) {
+        return new PublicationStream(origin, epochOf(origin) >= joinedAt ? 0 : lastSequence, this::deliver);
+    }
+
+    private void receiveBacklog(String origin) {
+        ZMQ.Socket backlog = backlogs.get(origin);
+        PublicationStream stream = streams.get(origin);
+        backlog.recv();
+        long originSequence = sequenceOf(backlog.recv());
+        while (backlog.hasReceiveMore()) {
+            byte[] header = backlog.recv();
+            long sequence = sequenceOf(header);
+            byte[] publication = backlog.recv();
+            acknowledge(header);
+            if (stream != null) {
+                stream.recover(sequence, publication);
+            }
+        }
+        if (stream != null) {
+            fetch(stream, stream.recovered(originSequence, System.currentTimeMillis()));
+        }
+    }
+
+    private void fetch(PublicationStream stream, long from) {
+        if (from == PublicationStream.NOTHING_TO_FETCH) {
+            return;
+        }
+        LOG.debug("Fetching publications from {} starting at {}", stream.getOrigin(), from);
+        ZMQ.Socket backlog = backlog(stream.getOrigin());
+        backlog.sendMore(topic(room));
+        backlog.send(toBytes(from));
+    }
+
+    private ZMQ.Socket backlog(String origin) {
+        return backlogs.computeIfAbsent(origin, o -> {
+            ZMQ.Socket socket = context.socket(ZMQ.DEALER);
+            socket.setLinger(0);
+            socket.connect(endpoint(addressOf(o), 2));
+            poller.register(socket, ZMQ.Poller.POLLIN);
+            polledOrigins.add(o);
+            return socket;
+        });
+    }
+
+    private void deliver(byte[] bytes) {
+        try {
+            Command command = commandCodec.decode(bytes);
+            clientCommandDispatcher.dispatch(command);
+        } catch (Exception e) {
+            LOG.error(UNEXPECTED_ERROR, e);
+        }
+    }
+
+    private void closeSockets() {
+        poller.close();
+        subscriber.close();
+        pendingRequests.close();
+        client.close();
+        backlogs.values().forEach(ZMQ.Socket::close);
+    }
+
     @Override
     public void logout(String name) {
         try {
-            client.send(objectMapper.writeValueAsBytes(logoutCommand(name)));
-            client.recv(0);
+            request(logoutCommand(name, room)).get();
         } catch (Exception e) {
             LOG.error(UNEXPECTED_ERROR, e);
         }
@@ -103,21 +644,71 @@ public class ChatClientImpl implements ChatClient {
 
     @Override
     public void send(String name, String message) {
+        request(messageCommand(name + NAME_SEPARATOR + " " + message, room))
+            .whenComplete((result, throwable) -> {
+                if (throwable != null) {
+                    LOG.error("Could not send " + message, throwable);
+                    eventBus.publishAsync(new ThrowableEvent(throwable));
+                }
+            });
+    }
+
+    /**
+     * Hands a request over to the thread owning the client socket. Blocks while all
+     * credits are taken.
+     *
+     * @return a future completed when the server replies, or for a message when it is
+     * published, or exceptionally when that does not happen after all retries
+     */
+    private CompletableFuture<Void> request(Command command) {
         try {
-            client.send(objectMapper.writeValueAsBytes(messageCommand(name + NAME_SEPARATOR + " " + message)));
-            client.recv(0);
-        } catch (Exception e) {
-            LOG.error(UNEXPECTED_ERROR, e);
-            terminate();
+            availableCredits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             throw new IllegalStateException(e);
         }
+
+        long correlationId = correlationIds.incrementAndGet();
+        Request request = new Request(envelope(command, name).toBytes(), commandCodec.encode(command), command.getType() == Command.Type.MESSAGE);
+        inFlight.put(correlationId, request);
+        synchronized (requests) {
+            if (!running.get()) {
+                inFlight.remove(correlationId);
+                throw new IllegalStateException("Not connected");
+            }
+            requests.send(toBytes(correlationId));
+        }
+        return request.reply;
     }
 
     private void terminate() {
-        running.set(false);
+        if (running.compareAndSet(true, false)) {
+            // sockets used for incoming messages are closed by the thread handling them
+            synchronized (requests) {
+                requests.close();
+            }
+            inFlight.values().forEach(request -> request.reply.completeExceptionally(new IllegalStateException("Disconnected")));
+            inFlight.clear();
+            // wake up callers waiting for credits
+            availableCredits.release(credits);
+            context.term();
+        }
+    }
 
-        subscriber.close();
-        client.close();
-        context.term();
+    private static class Request {
+        private final byte[] envelope;
+        private final byte[] payload;
+        private final boolean awaitsPublication;
+        private final CompletableFuture<Void> reply = new CompletableFuture<>();
+        // owned by the thread handling incoming messages
+        private long deadline;
+        private int attempts;
+        private boolean creditReturned;
+
+        private Request(byte[] envelope, byte[] payload, boolean awaitsPublication) {
+            this.envelope = envelope;
+            this.payload = payload;
+            this.awaitsPublication = awaitsPublication;
+        }
     }
 }
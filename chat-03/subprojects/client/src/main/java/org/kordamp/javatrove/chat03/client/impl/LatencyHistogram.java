@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat03.client.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts latencies in nanoseconds in log-linear buckets: every power of two is split
+ * into 8 buckets, so that percentiles are reported within 12.5% of the recorded value
+ * at a fixed cost in memory. Recording takes no locks; readers may run concurrently.
+ *
+ * @author Andres Almiray
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray((Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts.incrementAndGet(indexOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    /**
+     * Upper bound of the bucket holding the given percentile, from {@code 0} to {@code 100}.
+     */
+    public long getPercentile(double percentile) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(n * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d, mean=%.0f, p50=%d, p99=%d, p999=%d, max=%d",
+            getCount(), getMean(), getPercentile(50), getPercentile(99), getPercentile(99.9), getMax());
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBoundOf(int index) {
+        int row = index / SUB_BUCKETS;
+        if (row == 0) {
+            return index;
+        }
+        int shift = row - 1;
+        long next = (long) (SUB_BUCKETS + index % SUB_BUCKETS + 1) << shift;
+        return next - 1;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat03.client.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Delivers the publications sequenced by one server in order. Publications that
+ * arrive after a gap are held back while the missing ones are fetched from the
+ * backlog of that server; whatever the backlog no longer has, or does not send in
+ * time, is skipped. Instances are not thread-safe.
+ *
+ * @author Andres Almiray
+ */
+class PublicationStream {
+    private static final Logger LOG = LoggerFactory.getLogger(PublicationStream.class);
+    private static final long FETCH_TIMEOUT_MILLIS = 2000;
+    static final long NOTHING_TO_FETCH = -1;
+
+    private final String origin;
+    private final Consumer<byte[]> delivery;
+    private final TreeMap<Long, byte[]> pending = new TreeMap<>();
+    private long lastSequence;
+    private long fetchDeadline;
+
+    /**
+     * @param lastSequence the last sequence number already accounted for, or a negative
+     *                     value to start from whichever publication arrives first
+     */
+    PublicationStream(@Nonnull String origin, long lastSequence, @Nonnull Consumer<byte[]> delivery) {
+        this.origin = origin;
+        this.lastSequence = lastSequence;
+        this.delivery = delivery;
+    }
+
+    @Nonnull
+    String getOrigin() {
+        return origin;
+    }
+
+    /**
+     * Accepts a live publication.
+     *
+     * @return the sequence number to fetch the backlog from, or {@code NOTHING_TO_FETCH}
+     */
+    long offer(long sequence, @Nonnull byte[] publication, long now) {
+        if (lastSequence < 0) {
+            lastSequence = sequence - 1;
+        }
+        if (sequence > lastSequence) {
+            pending.put(sequence, publication);
+            flush();
+        }
+        return fetchIfMissing(now);
+    }
+
+    /**
+     * Accepts a publication retrieved from the backlog.
+     */
+    void recover(long sequence, @Nonnull byte[] publication) {
+        if (sequence > lastSequence) {
+            pending.putIfAbsent(sequence, publication);
+        }
+    }
+
+    /**
+     * Completes a backlog fetch. Publications up to {@code originSequence} that are still
+     * missing are no longer retained by the origin and are skipped.
+     *
+     * @return the sequence number to fetch the backlog from, or {@code NOTHING_TO_FETCH}
+     */
+    long recovered(long originSequence, long now) {
+        fetchDeadline = 0;
+        if (!pending.isEmpty()) {
+            skipTo(Math.min(originSequence, pending.firstKey() - 1));
+        }
+        flush();
+        return fetchIfMissing(now);
+    }
+
+    /**
+     * Gives up on a backlog fetch that took too long.
+     *
+     * @return the sequence number to fetch the backlog from, or {@code NOTHING_TO_FETCH}
+     */
+    long expire(long now) {
+        if (fetchDeadline == 0 || now < fetchDeadline) {
+            return NOTHING_TO_FETCH;
+        }
+        fetchDeadline = 0;
+        if (!pending.isEmpty()) {
+            skipTo(pending.firstKey() - 1);
+        }
+        flush();
+        return fetchIfMissing(now);
+    }
+
+    /**
+     * Fetches whatever the origin published after the last publication accounted for,
+     * for when publications may have been missed with no later one to show the gap.
+     *
+     * @return the sequence number to fetch the backlog from, or {@code NOTHING_TO_FETCH}
+     */
+    long resync(long now) {
+        if (lastSequence < 0 || fetchDeadline != 0) {
+            return NOTHING_TO_FETCH;
+        }
+        fetchDeadline = now + FETCH_TIMEOUT_MILLIS;
+        return lastSequence + 1;
+    }
+
+    private long fetchIfMissing(long now) {
+        if (pending.isEmpty() || fetchDeadline != 0) {
+            return NOTHING_TO_FETCH;
+        }
+        fetchDeadline = now + FETCH_TIMEOUT_MILLIS;
+        return lastSequence + 1;
+    }
+
+    private void skipTo(long sequence) {
+        if (sequence > lastSequence) {
+            LOG.warn("Lost publications {} to {} from {}", lastSequence + 1, sequence, origin);
+            lastSequence = sequence;
+        }
+    }
+
+    private void flush() {
+        while (!pending.isEmpty() && pending.firstKey() == lastSequence + 1) {
+            Map.Entry<Long, byte[]> entry = pending.pollFirstEntry();
+            lastSequence = entry.getKey();
+            delivery.accept(entry.getValue());
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat03.client.impl;
+
+/**
+ * Legs of the path of a traced message, each measured between two of its stamps.
+ *
+ * @author Andres Almiray
+ */
+public enum TraceHop {
+    /**
+     * From the client sending the request to a server worker receiving it.
+     */
+    REQUEST,
+    /**
+     * From a server worker receiving the request to the server publishing it.
+     */
+    DISPATCH,
+    /**
+     * From the server publishing the message to the client receiving it.
+     */
+    FAN_OUT,
+    /**
+     * From the client receiving the message to its handlers having dispatched it.
+     */
+    DELIVERY
+}
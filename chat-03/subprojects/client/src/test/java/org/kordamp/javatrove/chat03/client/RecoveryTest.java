@@ -0,0 +1,325 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat03.client;
+
+import com.google.inject.Guice;
+import org.junit.After;
+import org.junit.Test;
+import org.kordamp.javatrove.chat03.ChatUtil;
+import org.kordamp.javatrove.chat03.Command;
+import org.kordamp.javatrove.chat03.Envelope;
+import org.kordamp.javatrove.chat03.server.ChatServer;
+import org.kordamp.javatrove.chat03.server.ServerModule;
+import org.zeromq.ZMQ;
+import org.zeromq.ZMQException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+import static com.google.inject.name.Names.named;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.kordamp.javatrove.chat03.ChatUtil.bindEndpoint;
+import static org.kordamp.javatrove.chat03.ChatUtil.connectEndpoint;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+/**
+ * A client sending messages at a steady pace while its server is killed recovers
+ * without losing or duplicating any of them, either by failing over to another server
+ * or by reconnecting once the server is restarted on the same port. A message lost on
+ * its way to the server is resent even if an identical one got through.
+ *
+ * @author Andres Almiray
+ */
+public class RecoveryTest {
+    private static final int SERVER_A_PORT = 56400;
+    private static final int SERVER_B_PORT = 56410;
+    private static final int PROXY_PORT = 56420;
+    private static final int PROXIED_SERVER_PORT = 56430;
+    private static final String NAME = "Alice";
+    private static final long SEND_INTERVAL_MILLIS = 5;
+    private static final long WARMUP_MILLIS = 1000;
+    private static final long RESTART_DELAY_MILLIS = 500;
+    private static final long RECOVERY_MILLIS = 8000;
+    private static final long MAX_GAP_MILLIS = 5000;
+
+    private final List<ChatServer> servers = new ArrayList<>();
+    private final List<Delivery> deliveries = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean sending = new AtomicBoolean(true);
+    private final AtomicInteger sent = new AtomicInteger();
+    private ChatClient client;
+    private ZMQ.Context proxyContext;
+
+    @After
+    public void cleanup() {
+        sending.set(false);
+        if (client != null) {
+            client.logout(NAME);
+        }
+        servers.forEach(ChatServer::stop);
+        if (proxyContext != null) {
+            proxyContext.term();
+        }
+    }
+
+    @Test
+    public void client_fails_over_to_another_server_without_losing_messages() throws Exception {
+        // given:
+        ChatServer serverA = start(SERVER_A_PORT);
+        start(SERVER_B_PORT);
+        client = login(SERVER_A_PORT, "localhost:" + SERVER_B_PORT);
+        Thread load = sendUnderLoad();
+        Thread.sleep(WARMUP_MILLIS);
+
+        // when:
+        stop(serverA);
+        Thread.sleep(RECOVERY_MILLIS);
+
+        // then:
+        assertRecovered(load);
+    }
+
+    @Test
+    public void client_reconnects_to_a_restarted_server_without_losing_messages() throws Exception {
+        // given:
+        ChatServer serverA = start(SERVER_A_PORT);
+        client = login(SERVER_A_PORT, "");
+        Thread load = sendUnderLoad();
+        Thread.sleep(WARMUP_MILLIS);
+
+        // when:
+        stop(serverA);
+        Thread.sleep(RESTART_DELAY_MILLIS);
+        start(SERVER_A_PORT);
+        Thread.sleep(RECOVERY_MILLIS);
+
+        // then:
+        assertRecovered(load);
+    }
+
+    @Test
+    public void client_resends_a_lost_message_identical_to_one_delivered() throws Exception {
+        // given:
+        start(PROXIED_SERVER_PORT, "localhost:" + PROXY_PORT);
+        startProxy(PROXY_PORT, PROXIED_SERVER_PORT);
+        client = login(PROXY_PORT, "");
+
+        // when: the first of two identical messages never reaches the server
+        client.send(NAME, "hello");
+        client.send(NAME, "hello");
+
+        // then:
+        String message = NAME + ChatUtil.NAME_SEPARATOR + " hello";
+        await().atMost(10, SECONDS).until(() -> deliveries.stream().filter(delivery -> delivery.payload.equals(message)).count() == 2);
+    }
+
+    private void assertRecovered(Thread load) throws InterruptedException {
+        sending.set(false);
+        load.join();
+        await().atMost(10, SECONDS).until(() -> deliveries.size() >= sent.get());
+
+        Set<String> expected = new LinkedHashSet<>();
+        for (int i = 1; i <= sent.get(); i++) {
+            expected.add(message(i));
+        }
+        Set<String> delivered = new LinkedHashSet<>();
+        deliveries.forEach(delivery -> delivered.add(delivery.payload));
+        assertEquals("duplicated messages", delivered.size(), deliveries.size());
+        assertEquals("lost messages", expected, delivered);
+        assertThat("longest gap between deliveries", longestGapMillis(), lessThan(MAX_GAP_MILLIS));
+    }
+
+    private long longestGapMillis() {
+        long gap = 0;
+        for (int i = 1; i < deliveries.size(); i++) {
+            gap = Math.max(gap, deliveries.get(i).receivedAt - deliveries.get(i - 1).receivedAt);
+        }
+        return gap / 1_000_000;
+    }
+
+    private Thread sendUnderLoad() {
+        Thread load = new Thread(() -> {
+            try {
+                while (sending.get()) {
+                    client.send(NAME, "m" + (sent.get() + 1));
+                    sent.incrementAndGet();
+                    Thread.sleep(SEND_INTERVAL_MILLIS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        load.start();
+        return load;
+    }
+
+    private static String message(int index) {
+        return NAME + ChatUtil.NAME_SEPARATOR + " m" + index;
+    }
+
+    private ChatServer start(int port) {
+        return start(port, "");
+    }
+
+    private ChatServer start(int port, String nodeAddress) {
+        ChatServer server = Guice.createInjector(new ServerModule() {
+            @Override
+            protected void bindServerPort() {
+                bindConstant()
+                    .annotatedWith(named(ChatUtil.SERVER_PORT_KEY))
+                    .to(port);
+            }
+
+            @Override
+            protected void bindNodeAddress() {
+                bindConstant()
+                    .annotatedWith(named(ChatUtil.NODE_ADDRESS_KEY))
+                    .to(nodeAddress);
+            }
+        }).getInstance(ChatServer.class);
+        server.start();
+        servers.add(server);
+        return server;
+    }
+
+    /**
+     * Relays the requests, publications and backlogs of the server at {@code serverPort}
+     * on {@code port}, dropping the first message request on its way to the server.
+     */
+    private void startProxy(int port, int serverPort) {
+        proxyContext = ZMQ.context(1);
+        AtomicBoolean dropped = new AtomicBoolean();
+        // requests are [identity][delimiter][correlation id][envelope][command]
+        relay(ZMQ.ROUTER, port, ZMQ.DEALER, serverPort,
+            frames -> Envelope.fromBytes(frames.get(3)).getType() == Command.Type.MESSAGE && dropped.compareAndSet(false, true) ? null : frames,
+            frames -> frames);
+        relay(ZMQ.XPUB, port + 1, ZMQ.XSUB, serverPort + 1, frames -> frames, frames -> frames);
+        // the backlog socket replies to its peer directly, so identities are kept here
+        Queue<byte[]> identities = new ArrayDeque<>();
+        relay(ZMQ.ROUTER, port + 2, ZMQ.DEALER, serverPort + 2,
+            frames -> {
+                identities.add(frames.remove(0));
+                return frames;
+            },
+            frames -> {
+                frames.add(0, identities.remove());
+                return frames;
+            });
+    }
+
+    /**
+     * Relays messages between a socket bound to {@code port} and one connected to
+     * {@code serverPort}; a message is dropped when {@code toServer} returns {@code null}.
+     */
+    private void relay(int frontendType, int port, int backendType, int serverPort,
+                       UnaryOperator<List<byte[]>> toServer, UnaryOperator<List<byte[]>> fromServer) {
+        ZMQ.Socket frontend = proxyContext.socket(frontendType);
+        ZMQ.Socket backend = proxyContext.socket(backendType);
+        frontend.bind(bindEndpoint(ChatUtil.TRANSPORT, port));
+        backend.connect(connectEndpoint(ChatUtil.TRANSPORT, "localhost", serverPort));
+        Thread thread = new Thread(() -> {
+            ZMQ.Poller poller = proxyContext.poller(2);
+            poller.register(frontend, ZMQ.Poller.POLLIN);
+            poller.register(backend, ZMQ.Poller.POLLIN);
+            try {
+                while (poller.poll() >= 0) {
+                    if (poller.pollin(0)) {
+                        List<byte[]> frames = toServer.apply(receive(frontend));
+                        if (frames != null) {
+                            send(backend, frames);
+                        }
+                    }
+                    if (poller.pollin(1)) {
+                        send(frontend, fromServer.apply(receive(backend)));
+                    }
+                }
+            } catch (ZMQException e) {
+                // the context has been terminated
+            } finally {
+                poller.close();
+                frontend.close();
+                backend.close();
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static List<byte[]> receive(ZMQ.Socket socket) {
+        List<byte[]> frames = new ArrayList<>();
+        do {
+            frames.add(socket.recv());
+        } while (socket.hasReceiveMore());
+        return frames;
+    }
+
+    private static void send(ZMQ.Socket socket, List<byte[]> frames) {
+        for (int i = 0; i < frames.size(); i++) {
+            socket.send(frames.get(i), i < frames.size() - 1 ? ZMQ.SNDMORE : 0);
+        }
+    }
+
+    private void stop(ChatServer server) {
+        servers.remove(server);
+        server.stop();
+    }
+
+    private ChatClient login(int port, String failover) {
+        ChatClient chatClient = Guice.createInjector(new AppModule() {
+            @Override
+            protected void bindFailover() {
+                bindConstant()
+                    .annotatedWith(named(ChatUtil.FAILOVER_KEY))
+                    .to(failover);
+            }
+
+            @Override
+            protected void bindCommandDispatcher() {
+                bind(ClientCommandDispatcher.class)
+                    .toInstance(command -> {
+                        if (command.getType() == Command.Type.MESSAGE) {
+                            deliveries.add(new Delivery(command.getPayload(), System.nanoTime()));
+                        }
+                    });
+            }
+        }).getInstance(ChatClient.class);
+        chatClient.login("localhost", port, NAME);
+        return chatClient;
+    }
+
+    private static class Delivery {
+        private final String payload;
+        private final long receivedAt;
+
+        private Delivery(String payload, long receivedAt) {
+            this.payload = payload;
+            this.receivedAt = receivedAt;
+        }
+    }
+}
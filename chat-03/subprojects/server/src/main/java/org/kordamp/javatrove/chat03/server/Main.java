@@ -27,13 +27,20 @@ import javax.inject.Inject;
  * @author Andres Almiray
  */
 public class Main {
+    private static final String BROKER_MODE = "broker";
+
     @Inject private ChatServer server;
+    @Inject private ChatBroker broker;
 
     public static void main(String[] args) throws Exception {
         Injector injector = Guice.createInjector(new ServerModule());
         Main main = new Main();
         injector.injectMembers(main);
-        main.run();
+        if (args.length > 0 && BROKER_MODE.equals(args[0])) {
+            main.runBroker();
+        } else {
+            main.run();
+        }
     }
 
     private Main() {
@@ -43,4 +50,8 @@ public class Main {
     public void run() {
         server.start();
     }
+
+    public void runBroker() {
+        broker.start();
+    }
 }
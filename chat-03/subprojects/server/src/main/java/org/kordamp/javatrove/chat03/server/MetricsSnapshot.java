@@ -0,0 +1,56 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat03.server;
+
+import lombok.Builder;
+import lombok.Data;
+import org.kordamp.javatrove.chat03.Command;
+
+import java.util.Map;
+
+/**
+ * Totals counted by {@link ChatMetrics} since the server started.
+ *
+ * @author Andres Almiray
+ */
+@Data
+public class MetricsSnapshot {
+    private Map<Command.Type, Long> receivedMessages;
+    private Map<Command.Type, Long> receivedBytes;
+    private Map<Command.Type, Long> publishedMessages;
+    private Map<Command.Type, Long> publishedBytes;
+    private long accepted;
+    private long connected;
+    private long disconnected;
+
+    @Builder
+    public static MetricsSnapshot create(Map<Command.Type, Long> receivedMessages, Map<Command.Type, Long> receivedBytes,
+                                         Map<Command.Type, Long> publishedMessages, Map<Command.Type, Long> publishedBytes,
+                                         long accepted, long connected, long disconnected) {
+        MetricsSnapshot snapshot = new MetricsSnapshot();
+        snapshot.setReceivedMessages(receivedMessages);
+        snapshot.setReceivedBytes(receivedBytes);
+        snapshot.setPublishedMessages(publishedMessages);
+        snapshot.setPublishedBytes(publishedBytes);
+        snapshot.setAccepted(accepted);
+        snapshot.setConnected(connected);
+        snapshot.setDisconnected(disconnected);
+        return snapshot;
+    }
+}
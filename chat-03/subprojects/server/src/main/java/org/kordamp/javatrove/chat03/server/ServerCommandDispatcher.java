@@ -18,12 +18,12 @@
  */
 package org.kordamp.javatrove.chat03.server;
 
-import org.kordamp.javatrove.chat03.Command;
+import org.kordamp.javatrove.chat03.Envelope;
 import org.zeromq.ZMQ;
 
 /**
  * @author Andres Almiray
  */
 public interface ServerCommandDispatcher {
-    void dispatch(ZMQ.Socket publisher, Command command) throws CommandExecutionException;
+    void dispatch(ZMQ.Socket publisher, Envelope envelope, byte[] correlationId, byte[] payload, byte[] trace) throws CommandExecutionException;
 }
@@ -19,6 +19,7 @@
 package org.kordamp.javatrove.chat03.server;
 
 import org.kordamp.javatrove.chat03.Command;
+import org.kordamp.javatrove.chat03.Envelope;
 import org.zeromq.ZMQ;
 
 /**
@@ -27,5 +28,5 @@ import org.zeromq.ZMQ;
 public interface ServerCommandHandler {
     boolean supports(Command.Type commandType);
 
-    void handle(ZMQ.Socket publisher, Command command);
+    void handle(ZMQ.Socket publisher, Envelope envelope, byte[] correlationId, byte[] payload, byte[] trace);
 }
@@ -18,15 +18,19 @@
  */
 package org.kordamp.javatrove.chat03.server;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.kordamp.javatrove.chat03.ChatUtil;
-import org.kordamp.javatrove.chat03.impl.ObjectMapperProvider;
+import org.kordamp.javatrove.chat03.CommandCodec;
+import org.kordamp.javatrove.chat03.impl.ContextProvider;
+import org.kordamp.javatrove.chat03.impl.MessagePackCommandCodec;
+import org.kordamp.javatrove.chat03.server.impl.ChatBrokerImpl;
+import org.kordamp.javatrove.chat03.server.impl.ChatMetricsImpl;
 import org.kordamp.javatrove.chat03.server.impl.ChatServerImpl;
 import org.kordamp.javatrove.chat03.server.impl.ScheduledExecutorServiceProvider;
 import org.kordamp.javatrove.chat03.server.impl.ServerCommandDispatcherImpl;
 import org.kordamp.javatrove.chat03.server.impl.ServerLoginCommandHandler;
 import org.kordamp.javatrove.chat03.server.impl.ServerLogoutCommandHandler;
 import org.kordamp.javatrove.chat03.server.impl.ServerMessageCommandHandler;
+import org.zeromq.ZMQ;
 import ru.vyarus.guice.ext.ExtAnnotationsModule;
 
 import javax.inject.Singleton;
@@ -46,9 +50,21 @@ public class ServerModule extends ExtAnnotationsModule {
     protected final void configure() {
         super.configure();
         bindServerPort();
+        bindTransport();
+        bindIoThreads();
+        bindWorkers();
+        bindBroker();
+        bindNodeAddress();
+        bindBacklogSize();
+        bindPublisherHwm();
+        bindBrokerPort();
+        bindMetricsInterval();
         bindChatServer();
-        bindObjectMapper();
+        bindChatBroker();
+        bindChatMetrics();
+        bindCommandCodec();
         bindExecutorService();
+        bindContext();
         bindCommandDispatcher();
         bindLoginCommandHandler();
         bindLogoutCommandHandler();
@@ -58,7 +74,61 @@ public class ServerModule extends ExtAnnotationsModule {
     protected void bindServerPort() {
         bindConstant()
             .annotatedWith(named(ChatUtil.SERVER_PORT_KEY))
-            .to(ChatUtil.SERVER_PORT);
+            .to(Integer.getInteger(ChatUtil.SERVER_PORT_PROPERTY, ChatUtil.SERVER_PORT));
+    }
+
+    protected void bindTransport() {
+        bindConstant()
+            .annotatedWith(named(ChatUtil.TRANSPORT_KEY))
+            .to(System.getProperty(ChatUtil.TRANSPORT_PROPERTY, ChatUtil.TRANSPORT));
+    }
+
+    protected void bindIoThreads() {
+        bindConstant()
+            .annotatedWith(named(ChatUtil.IO_THREADS_KEY))
+            .to(Integer.getInteger(ChatUtil.IO_THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()));
+    }
+
+    protected void bindWorkers() {
+        bindConstant()
+            .annotatedWith(named(ChatUtil.WORKERS_KEY))
+            .to(ChatUtil.WORKERS);
+    }
+
+    protected void bindBroker() {
+        bindConstant()
+            .annotatedWith(named(ChatUtil.BROKER_KEY))
+            .to(System.getProperty(ChatUtil.BROKER_PROPERTY, ""));
+    }
+
+    protected void bindNodeAddress() {
+        bindConstant()
+            .annotatedWith(named(ChatUtil.NODE_ADDRESS_KEY))
+            .to(System.getProperty(ChatUtil.NODE_ADDRESS_PROPERTY, ""));
+    }
+
+    protected void bindBacklogSize() {
+        bindConstant()
+            .annotatedWith(named(ChatUtil.BACKLOG_SIZE_KEY))
+            .to(ChatUtil.BACKLOG_SIZE);
+    }
+
+    protected void bindPublisherHwm() {
+        bindConstant()
+            .annotatedWith(named(ChatUtil.PUBLISHER_HWM_KEY))
+            .to(Integer.getInteger(ChatUtil.PUBLISHER_HWM_PROPERTY, ChatUtil.PUBLISHER_HWM));
+    }
+
+    protected void bindBrokerPort() {
+        bindConstant()
+            .annotatedWith(named(ChatUtil.BROKER_PORT_KEY))
+            .to(Integer.getInteger(ChatUtil.BROKER_PORT_PROPERTY, ChatUtil.BROKER_PORT));
+    }
+
+    protected void bindMetricsInterval() {
+        bindConstant()
+            .annotatedWith(named(ChatUtil.METRICS_INTERVAL_KEY))
+            .to(Integer.getInteger(ChatUtil.METRICS_INTERVAL_PROPERTY, ChatUtil.METRICS_INTERVAL));
     }
 
     protected void bindChatServer() {
@@ -67,9 +137,21 @@ public class ServerModule extends ExtAnnotationsModule {
             .in(Singleton.class);
     }
 
-    protected void bindObjectMapper() {
-        bind(ObjectMapper.class)
-            .toProvider(ObjectMapperProvider.class)
+    protected void bindChatBroker() {
+        bind(ChatBroker.class)
+            .to(ChatBrokerImpl.class)
+            .in(Singleton.class);
+    }
+
+    protected void bindChatMetrics() {
+        bind(ChatMetrics.class)
+            .to(ChatMetricsImpl.class)
+            .in(Singleton.class);
+    }
+
+    protected void bindCommandCodec() {
+        bind(CommandCodec.class)
+            .to(MessagePackCommandCodec.class)
             .in(Singleton.class);
     }
 
@@ -79,6 +161,11 @@ public class ServerModule extends ExtAnnotationsModule {
             .in(Singleton.class);
     }
 
+    protected void bindContext() {
+        bind(ZMQ.Context.class)
+            .toProvider(ContextProvider.class);
+    }
+
     protected void bindCommandDispatcher() {
         bind(ServerCommandDispatcher.class)
             .to(ServerCommandDispatcherImpl.class)
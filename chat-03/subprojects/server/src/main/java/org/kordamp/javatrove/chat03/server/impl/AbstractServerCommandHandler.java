@@ -18,31 +18,45 @@
  */
 package org.kordamp.javatrove.chat03.server.impl;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.kordamp.javatrove.chat03.Command;
+import org.kordamp.javatrove.chat03.Envelope;
+import org.kordamp.javatrove.chat03.server.ChatMetrics;
 import org.kordamp.javatrove.chat03.server.ServerCommandHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.zeromq.ZMQ;
 
 import javax.inject.Inject;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.kordamp.javatrove.chat03.ChatUtil.LOG_SAMPLE_RATE;
+import static org.kordamp.javatrove.chat03.ChatUtil.topic;
 
 /**
+ * Publishes the payload of a command to the topic of its room as received, without
+ * decoding it, along with the correlation id of its request and its trace frame if it
+ * has one.
+ *
  * @author Andres Almiray
  */
 public abstract class AbstractServerCommandHandler implements ServerCommandHandler {
     private static final Logger LOG = LoggerFactory.getLogger(AbstractServerCommandHandler.class);
 
-    @Inject protected ObjectMapper objectMapper;
+    @Inject private ChatMetrics chatMetrics;
 
     @Override
-    public void handle(ZMQ.Socket publisher, Command command) {
-        try {
-            LOG.info("publishing " + command);
-            publisher.send(objectMapper.writeValueAsBytes(command));
-        } catch (JsonProcessingException e) {
-            LOG.error("Unexpected error", e);
+    public void handle(ZMQ.Socket publisher, Envelope envelope, byte[] correlationId, byte[] payload, byte[] trace) {
+        if (LOG.isDebugEnabled() && ThreadLocalRandom.current().nextInt(LOG_SAMPLE_RATE) == 0) {
+            LOG.debug("publishing {}", envelope);
+        }
+        byte[] topic = topic(envelope.getRoom());
+        publisher.sendMore(topic);
+        publisher.sendMore(correlationId);
+        if (trace != null) {
+            publisher.sendMore(payload);
+            publisher.send(trace);
+        } else {
+            publisher.send(payload);
         }
+        chatMetrics.published(envelope, topic.length + payload.length);
     }
 }
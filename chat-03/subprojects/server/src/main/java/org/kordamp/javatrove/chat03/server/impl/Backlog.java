@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat03.server.impl;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Bounded ring buffer holding the most recent publications of a room, along with the
+ * correlation ids of the requests they publish.
+ * Each appended publication is assigned the next sequence number.
+ * Instances are not thread-safe; callers must provide their own locking.
+ *
+ * @author Andres Almiray
+ */
+class Backlog {
+    private final byte[][] publications;
+    private final byte[][] correlationIds;
+    private long lastSequence;
+
+    Backlog(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Backlog capacity must be greater than 0");
+        }
+        this.publications = new byte[capacity][];
+        this.correlationIds = new byte[capacity][];
+    }
+
+    long append(@Nonnull byte[] correlationId, @Nonnull byte[] publication) {
+        int index = indexOf(++lastSequence);
+        correlationIds[index] = correlationId;
+        publications[index] = publication;
+        return lastSequence;
+    }
+
+    long getLastSequence() {
+        return lastSequence;
+    }
+
+    long getFirstSequence() {
+        return Math.max(1, lastSequence - publications.length + 1);
+    }
+
+    @Nonnull
+    byte[] get(long sequence) {
+        return publications[indexOf(sequence)];
+    }
+
+    @Nonnull
+    byte[] getCorrelationId(long sequence) {
+        return correlationIds[indexOf(sequence)];
+    }
+
+    private int indexOf(long sequence) {
+        return (int) (sequence % publications.length);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat03.server.impl;
+
+import org.kordamp.javatrove.chat03.ChatUtil;
+import org.kordamp.javatrove.chat03.server.ChatBroker;
+import org.zeromq.ZMQ;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.kordamp.javatrove.chat03.ChatUtil.bindEndpoint;
+
+/**
+ * Joins the publications of any number of servers into a single stream. Servers
+ * connect their publishers to the XSUB socket at {@code port}, clients subscribe
+ * to the XPUB socket at {@code port + 1}. Subscriptions travel upstream, so servers
+ * still filter by topic before sending anything. Both sockets are bounded by the
+ * publisher high water mark; subscribers that fall behind lose publications rather
+ * than growing the queues of the broker. Both endpoints use the configured transport.
+ *
+ * @author Andres Almiray
+ */
+public class ChatBrokerImpl implements ChatBroker {
+    @Inject
+    @Named(ChatUtil.BROKER_PORT_KEY)
+    private int port;
+
+    @Inject
+    @Named(ChatUtil.TRANSPORT_KEY)
+    private String transport;
+
+    @Inject
+    @Named(ChatUtil.PUBLISHER_HWM_KEY)
+    private int publisherHwm;
+
+    @Inject private Provider<ZMQ.Context> contextProvider;
+
+    private ZMQ.Context context;
+    private ExecutorService executorService;
+
+    @Override
+    public void start() {
+        context = contextProvider.get();
+        executorService = Executors.newSingleThreadExecutor();
+
+        ZMQ.Socket frontend = context.socket(ZMQ.XSUB);
+        ZMQ.Socket backend = context.socket(ZMQ.XPUB);
+        frontend.setRcvHWM(publisherHwm);
+        backend.setSndHWM(publisherHwm);
+        frontend.bind(bindEndpoint(transport, port));
+        backend.bind(bindEndpoint(transport, port + 1));
+
+        executorService.submit(() -> {
+            try {
+                ZMQ.proxy(frontend, backend, null);
+            } finally {
+                frontend.close();
+                backend.close();
+            }
+        });
+    }
+
+    @Override
+    public void stop() {
+        context.term();
+        executorService.shutdownNow();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat03.server.impl;
+
+import org.kordamp.javatrove.chat03.Command;
+import org.kordamp.javatrove.chat03.Envelope;
+import org.kordamp.javatrove.chat03.server.ChatMetrics;
+import org.kordamp.javatrove.chat03.server.MetricsSnapshot;
+import org.zeromq.ZMQ;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps a {@link LongAdder} per command type and counter, so that worker threads
+ * can count concurrently without contending on a shared variable. The maps are
+ * filled upfront and never modified afterwards.
+ *
+ * @author Andres Almiray
+ */
+public class ChatMetricsImpl implements ChatMetrics {
+    private final Map<Command.Type, LongAdder> receivedMessages = counters();
+    private final Map<Command.Type, LongAdder> receivedBytes = counters();
+    private final Map<Command.Type, LongAdder> publishedMessages = counters();
+    private final Map<Command.Type, LongAdder> publishedBytes = counters();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder connected = new LongAdder();
+    private final LongAdder disconnected = new LongAdder();
+
+    @Override
+    public void received(Envelope envelope, int bytes) {
+        receivedMessages.get(envelope.getType()).increment();
+        receivedBytes.get(envelope.getType()).add(bytes);
+    }
+
+    @Override
+    public void published(Envelope envelope, int bytes) {
+        publishedMessages.get(envelope.getType()).increment();
+        publishedBytes.get(envelope.getType()).add(bytes);
+    }
+
+    @Override
+    public void socketEvent(int event) {
+        switch (event) {
+            case ZMQ.EVENT_ACCEPTED:
+                accepted.increment();
+                break;
+            case ZMQ.EVENT_CONNECTED:
+                connected.increment();
+                break;
+            case ZMQ.EVENT_DISCONNECTED:
+                disconnected.increment();
+                break;
+            default:
+                // not counted
+        }
+    }
+
+    @Override
+    public MetricsSnapshot snapshot() {
+        return MetricsSnapshot.builder()
+            .receivedMessages(sums(receivedMessages))
+            .receivedBytes(sums(receivedBytes))
+            .publishedMessages(sums(publishedMessages))
+            .publishedBytes(sums(publishedBytes))
+            .accepted(accepted.sum())
+            .connected(connected.sum())
+            .disconnected(disconnected.sum())
+            .build();
+    }
+
+    private static Map<Command.Type, LongAdder> counters() {
+        Map<Command.Type, LongAdder> counters = new EnumMap<>(Command.Type.class);
+        for (Command.Type type : Command.Type.values()) {
+            counters.put(type, new LongAdder());
+        }
+        return counters;
+    }
+
+    private static Map<Command.Type, Long> sums(Map<Command.Type, LongAdder> counters) {
+        Map<Command.Type, Long> sums = new EnumMap<>(Command.Type.class);
+        counters.forEach((type, counter) -> sums.put(type, counter.sum()));
+        return sums;
+    }
+}
@@ -18,81 +18,275 @@
  */
 package org.kordamp.javatrove.chat03.server.impl;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.kordamp.javatrove.chat03.ChatUtil;
 import org.kordamp.javatrove.chat03.Command;
+import org.kordamp.javatrove.chat03.CommandCodec;
+import org.kordamp.javatrove.chat03.Envelope;
+import org.kordamp.javatrove.chat03.server.ChatMetrics;
 import org.kordamp.javatrove.chat03.server.ChatServer;
 import org.kordamp.javatrove.chat03.server.CommandExecutionException;
 import org.kordamp.javatrove.chat03.server.ServerCommandDispatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.zeromq.ZMQ;
+import org.zeromq.ZMQException;
 
 import javax.inject.Inject;
 import javax.inject.Named;
-import java.io.IOException;
+import javax.inject.Provider;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
+import static org.kordamp.javatrove.chat03.ChatUtil.BATCH_SIZE;
+import static org.kordamp.javatrove.chat03.ChatUtil.CORRELATION_SIZE;
+import static org.kordamp.javatrove.chat03.ChatUtil.DUPLICATE_REPLY;
+import static org.kordamp.javatrove.chat03.ChatUtil.LOG_SAMPLE_RATE;
+import static org.kordamp.javatrove.chat03.ChatUtil.TRACE_SERVER_RECEIVE;
+import static org.kordamp.javatrove.chat03.ChatUtil.bindEndpoint;
+import static org.kordamp.javatrove.chat03.ChatUtil.connectEndpoint;
+import static org.kordamp.javatrove.chat03.ChatUtil.epochNanos;
 import static org.kordamp.javatrove.chat03.ChatUtil.errorCommand;
+import static org.kordamp.javatrove.chat03.ChatUtil.origin;
+import static org.kordamp.javatrove.chat03.ChatUtil.requestIdOf;
+import static org.kordamp.javatrove.chat03.ChatUtil.sessionOf;
+import static org.kordamp.javatrove.chat03.ChatUtil.stamp;
+import static org.kordamp.javatrove.chat03.ChatUtil.topic;
 
 /**
+ * Serves requests arriving on a ROUTER socket with a pool of worker threads, which
+ * hand what they publish to a single publisher thread, as ZeroMQ sockets must not be
+ * shared between threads. Publications are served at {@code port + 1}, or sent to the
+ * broker when one is configured, and backlogs of recent publications at {@code port + 2}.
+ *
  * @author Andres Almiray
  */
 public class ChatServerImpl implements ChatServer {
     private static final Logger LOG = LoggerFactory.getLogger(ChatServerImpl.class);
-    private static final String TCP_PREFIX = "tcp://*:";
+    private static final String WORKERS_ENDPOINT = "inproc://workers-";
+    private static final String PUBLICATIONS_ENDPOINT = "inproc://publications-";
+    private static final byte[] NO_CORRELATION = new byte[0];
 
     @Inject
     @Named(ChatUtil.SERVER_PORT_KEY)
     private int port;
 
+    @Inject
+    @Named(ChatUtil.TRANSPORT_KEY)
+    private String transport;
+
+    @Inject
+    @Named(ChatUtil.WORKERS_KEY)
+    private int workers;
+
+    @Inject
+    @Named(ChatUtil.BROKER_KEY)
+    private String broker;
+
+    @Inject
+    @Named(ChatUtil.NODE_ADDRESS_KEY)
+    private String nodeAddress;
+
+    @Inject
+    @Named(ChatUtil.BACKLOG_SIZE_KEY)
+    private int backlogSize;
+
+    @Inject
+    @Named(ChatUtil.PUBLISHER_HWM_KEY)
+    private int publisherHwm;
+
+    @Inject
+    @Named(ChatUtil.METRICS_INTERVAL_KEY)
+    private int metricsInterval;
+
+    @Inject private CommandCodec commandCodec;
+    @Inject private ChatMetrics chatMetrics;
     @Inject private ScheduledExecutorService scheduledExecutorService;
-    @Inject private ObjectMapper objectMapper;
     @Inject private ServerCommandDispatcher serverCommandDispatcher;
+    @Inject private Provider<ZMQ.Context> contextProvider;
 
-    private ZMQ.Socket server;
-    private ZMQ.Socket publisher;
+    private final RecentRequests recentRequests = new RecentRequests();
     private ZMQ.Context context;
+    private ExecutorService executorService;
 
     @Override
     public void start() {
-        context = ZMQ.context(Runtime.getRuntime().availableProcessors());
-        server = context.socket(ZMQ.REP);
-        publisher = context.socket(ZMQ.PUB);
+        context = contextProvider.get();
+        executorService = Executors.newFixedThreadPool(workers + 3);
+
+        ZMQ.Socket frontend = context.socket(ZMQ.ROUTER);
+        ZMQ.Socket backend = context.socket(ZMQ.DEALER);
+        frontend.bind(bindEndpoint(transport, port));
+        backend.bind(WORKERS_ENDPOINT + port);
+
+        ZMQ.Socket publications = context.socket(ZMQ.PULL);
+        ZMQ.Socket publisher = context.socket(ZMQ.PUB);
+        ZMQ.Socket snapshots = context.socket(ZMQ.ROUTER);
         publisher.setLinger(5000);
-        publisher.setSndHWM(0);
+        publisher.setSndHWM(publisherHwm);
+        snapshots.setSndHWM(publisherHwm);
+        publications.bind(PUBLICATIONS_ENDPOINT + port);
+        if (broker.isEmpty()) {
+            publisher.bind(bindEndpoint(transport, port + 1));
+        } else {
+            int separator = broker.lastIndexOf(':');
+            publisher.connect(connectEndpoint(transport, broker.substring(0, separator), Integer.parseInt(broker.substring(separator + 1))));
+        }
+        snapshots.bind(bindEndpoint(transport, port + 2));
 
-        server.bind(TCP_PREFIX + port);
-        publisher.bind(TCP_PREFIX + (port + 1));
+        executorService.submit(new SocketMonitor(context, chatMetrics, frontend, publisher, snapshots));
+        executorService.submit(() -> proxy(frontend, backend));
+        executorService.submit(new Publisher(context, publications, publisher, snapshots, origin(nodeAddress.isEmpty() ? "localhost:" + port : nodeAddress, System.currentTimeMillis()), backlogSize));
+        for (int i = 0; i < workers; i++) {
+            executorService.submit(this::handleConnection);
+        }
+        scheduledExecutorService.scheduleAtFixedRate(() -> recentRequests.prune(System.currentTimeMillis()),
+            RecentRequests.IDLE_MILLIS, RecentRequests.IDLE_MILLIS, TimeUnit.MILLISECONDS);
+        if (metricsInterval > 0) {
+            scheduledExecutorService.scheduleAtFixedRate(() -> LOG.info("metrics {}", chatMetrics.snapshot()),
+                metricsInterval, metricsInterval, TimeUnit.SECONDS);
+        }
+    }
+
+    private void proxy(ZMQ.Socket frontend, ZMQ.Socket backend) {
+        ZMQ.Poller poller = context.poller(2);
+        poller.register(frontend, ZMQ.Poller.POLLIN);
+        poller.register(backend, ZMQ.Poller.POLLIN);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (poller.poll() < 0) {
+                    // the context has been terminated
+                    break;
+                }
+                if (poller.pollin(0)) {
+                    forward(frontend, backend);
+                }
+                if (poller.pollin(1)) {
+                    forward(backend, frontend);
+                }
+            }
+        } catch (ZMQException e) {
+            handleTermination(e);
+        } finally {
+            poller.close();
+            frontend.close();
+            backend.close();
+        }
+    }
 
-        scheduledExecutorService.submit(this::handleConnection);
+    /**
+     * Every poll allocates, so everything already queued, up to a batch, is forwarded
+     * before polling again.
+     */
+    private static void forward(ZMQ.Socket from, ZMQ.Socket to) {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            byte[] frame = from.recv(ZMQ.DONTWAIT);
+            if (frame == null) {
+                return;
+            }
+            while (from.hasReceiveMore()) {
+                to.sendMore(frame);
+                frame = from.recv();
+            }
+            to.send(frame);
+        }
     }
 
     private void handleConnection() {
-        while (!Thread.currentThread().isInterrupted()) {
-            byte[] bytes = server.recv();
-            try {
-                Command command = objectMapper.readValue(bytes, Command.class);
-                LOG.info("received " + command);
-                serverCommandDispatcher.dispatch(publisher, command);
-            } catch (CommandExecutionException e) {
-                try {
-                    publisher.send(objectMapper.writeValueAsBytes(errorCommand(e.getMessage())));
-                } catch (JsonProcessingException je) {
-                    LOG.error("Unexpected error", je);
+        ZMQ.Socket worker = context.socket(ZMQ.REP);
+        ZMQ.Socket publications = context.socket(ZMQ.PUSH);
+        try {
+            worker.connect(WORKERS_ENDPOINT + port);
+            publications.connect(PUBLICATIONS_ENDPOINT + port);
+            while (!Thread.currentThread().isInterrupted()) {
+                // [correlation id] envelope command [trace], the reply and the publication
+                // echo the correlation id
+                byte[] correlationId = NO_CORRELATION;
+                byte[] trace = null;
+                byte[] envelope = worker.recv();
+                byte[] payload = worker.hasReceiveMore() ? worker.recv() : null;
+                if (worker.hasReceiveMore()) {
+                    correlationId = envelope;
+                    envelope = payload;
+                    payload = worker.recv();
+                    if (worker.hasReceiveMore()) {
+                        trace = worker.recv();
+                        stamp(trace, TRACE_SERVER_RECEIVE, epochNanos());
+                    }
+                }
+                boolean duplicate = false;
+                if (payload != null) {
+                    duplicate = !dispatch(publications, correlationId, envelope, payload, trace);
+                } else {
+                    LOG.error("Discarding request without payload");
                 }
-            } catch (IOException e) {
-                LOG.error("Unexpected error", e);
+                if (correlationId != NO_CORRELATION) {
+                    worker.sendMore(correlationId);
+                }
+                worker.send(duplicate ? DUPLICATE_REPLY : "", 0);
             }
-            server.send("", 0);
+        } catch (ZMQException e) {
+            handleTermination(e);
+        } finally {
+            worker.close();
+            publications.close();
+        }
+    }
+
+    /**
+     * Clients resend requests whose reply is late; a resend is replied to with
+     * {@code DUPLICATE_REPLY} instead of being dispatched again.
+     */
+    private boolean isResend(byte[] correlationId) {
+        return correlationId.length == CORRELATION_SIZE &&
+            !recentRequests.firstSeen(sessionOf(correlationId), requestIdOf(correlationId), System.currentTimeMillis());
+    }
+
+    /**
+     * @return {@code false} if the request is a resend of one dispatched already
+     */
+    private boolean dispatch(ZMQ.Socket publications, byte[] correlationId, byte[] bytes, byte[] payload, byte[] trace) {
+        Envelope envelope;
+        try {
+            envelope = Envelope.fromBytes(bytes);
+        } catch (IllegalArgumentException e) {
+            LOG.error("Discarding request with invalid envelope", e);
+            return true;
+        }
+        chatMetrics.received(envelope, bytes.length + payload.length);
+        if (envelope.getType() == Command.Type.HEARTBEAT) {
+            return true;
+        }
+        if (isResend(correlationId)) {
+            LOG.debug("Discarding resent request {} of {}", requestIdOf(correlationId), envelope.getSender());
+            return false;
+        }
+
+        if (LOG.isDebugEnabled() && ThreadLocalRandom.current().nextInt(LOG_SAMPLE_RATE) == 0) {
+            LOG.debug("received {}", envelope);
+        }
+        try {
+            serverCommandDispatcher.dispatch(publications, envelope, correlationId, payload, trace);
+        } catch (CommandExecutionException e) {
+            publications.sendMore(topic(envelope.getRoom()));
+            publications.sendMore(correlationId);
+            publications.send(commandCodec.encode(errorCommand(e.getMessage(), envelope.getRoom())));
+        }
+        return true;
+    }
+
+    private void handleTermination(ZMQException e) {
+        if (e.getErrorCode() != ZMQ.Error.ETERM.getCode()) {
+            LOG.error("Unexpected error", e);
         }
     }
 
     @Override
     public void stop() {
-        server.close();
-        publisher.close();
+        scheduledExecutorService.shutdownNow();
         context.term();
+        executorService.shutdownNow();
     }
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat03.server.impl;
+
+import javax.annotation.Nonnull;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tracks how often each subscriber asks for a backlog. A subscriber only misses
+ * publications when its queue hits the high water mark, so one that asks repeatedly
+ * within a short window is considered to be lagging behind.
+ * Instances are not thread-safe.
+ *
+ * @author Andres Almiray
+ */
+class Laggards {
+    private static final long WINDOW_MILLIS = 10_000;
+    private static final int MAX_REQUESTS = 3;
+    private static final int PRUNE_THRESHOLD = 1024;
+
+    private final Map<ByteBuffer, Requests> requests = new HashMap<>();
+
+    /**
+     * Records a backlog request of the subscriber identified by {@code identity}.
+     *
+     * @return {@code true} if the subscriber is lagging behind
+     */
+    boolean isLagging(@Nonnull byte[] identity, long now) {
+        if (requests.size() > PRUNE_THRESHOLD) {
+            requests.values().removeIf(r -> now - r.windowStart >= WINDOW_MILLIS);
+        }
+        Requests r = requests.computeIfAbsent(ByteBuffer.wrap(identity), k -> new Requests());
+        if (now - r.windowStart >= WINDOW_MILLIS) {
+            r.windowStart = now;
+            r.count = 0;
+        }
+        return ++r.count > MAX_REQUESTS;
+    }
+
+    private static class Requests {
+        private long windowStart;
+        private int count;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat03.server.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zeromq.ZMQ;
+import org.zeromq.ZMQException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.kordamp.javatrove.chat03.ChatUtil.BATCH_SIZE;
+import static org.kordamp.javatrove.chat03.ChatUtil.TRACE_SERVER_PUBLISH;
+import static org.kordamp.javatrove.chat03.ChatUtil.epochNanos;
+import static org.kordamp.javatrove.chat03.ChatUtil.header;
+import static org.kordamp.javatrove.chat03.ChatUtil.stamp;
+import static org.kordamp.javatrove.chat03.ChatUtil.toLong;
+
+/**
+ * Owns the sockets that leave the server. Publications handed over by the workers,
+ * as {@code [topic][correlation id][command]}, are stamped with a per-room sequence
+ * number, published and kept in a backlog of the room. The same thread answers backlog
+ * requests on a ROUTER socket, so the backlogs need no locking. A trace frame following a publication is stamped and
+ * published after it, but not kept in the backlog.
+ * <p>
+ * A backlog request is {@code [topic][from]}. The reply is {@code [topic][header]}
+ * carrying the last sequence number of the room, followed by a {@code [header][command]}
+ * pair for every retained publication numbered {@code from} or above. Subscribers that
+ * keep asking for backlogs are not keeping up with the stream; they only get the most
+ * recent publications of the room and skip the rest, so that they can catch up.
+ *
+ * @author Andres Almiray
+ */
+class Publisher implements Runnable {
+    private static final Logger LOG = LoggerFactory.getLogger(Publisher.class);
+    private static final int SUMMARY_SIZE = 16;
+    private static final byte[] NO_CORRELATION = new byte[0];
+
+    private final ZMQ.Context context;
+    private final ZMQ.Socket publications;
+    private final ZMQ.Socket publisher;
+    private final ZMQ.Socket snapshots;
+    private final byte[] origin;
+    private final int backlogSize;
+    private final Map<String, Backlog> backlogs = new HashMap<>();
+    private final Laggards laggards = new Laggards();
+
+    Publisher(ZMQ.Context context, ZMQ.Socket publications, ZMQ.Socket publisher, ZMQ.Socket snapshots, String origin, int backlogSize) {
+        this.context = context;
+        this.publications = publications;
+        this.publisher = publisher;
+        this.snapshots = snapshots;
+        this.origin = origin.getBytes(StandardCharsets.UTF_8);
+        this.backlogSize = backlogSize;
+    }
+
+    @Override
+    public void run() {
+        ZMQ.Poller poller = context.poller(2);
+        poller.register(publications, ZMQ.Poller.POLLIN);
+        poller.register(snapshots, ZMQ.Poller.POLLIN);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (poller.poll() < 0) {
+                    // the context has been terminated
+                    break;
+                }
+                if (poller.pollin(0)) {
+                    for (int i = 0; i < BATCH_SIZE && publish(); i++) {
+                        // publish everything queued before polling again
+                    }
+                }
+                if (poller.pollin(1)) {
+                    serveBacklog();
+                }
+            }
+        } catch (ZMQException e) {
+            if (e.getErrorCode() != ZMQ.Error.ETERM.getCode()) {
+                LOG.error("Unexpected error", e);
+            }
+        } finally {
+            poller.close();
+            publications.close();
+            publisher.close();
+            snapshots.close();
+        }
+    }
+
+    private boolean publish() {
+        byte[] topic = publications.recv(ZMQ.DONTWAIT);
+        if (topic == null) {
+            return false;
+        }
+        byte[] correlationId = publications.recv();
+        byte[] command = publications.recv();
+        byte[] trace = publications.hasReceiveMore() ? publications.recv() : null;
+        long sequence = backlog(topic).append(correlationId, command);
+        publisher.sendMore(topic);
+        publisher.sendMore(header(sequence, correlationId, origin));
+        if (trace != null) {
+            stamp(trace, TRACE_SERVER_PUBLISH, epochNanos());
+            publisher.sendMore(command);
+            publisher.send(trace);
+        } else {
+            publisher.send(command);
+        }
+        return true;
+    }
+
+    private void serveBacklog() {
+        byte[] identity = snapshots.recv();
+        byte[] topic = snapshots.recv();
+        long from = toLong(snapshots.recv());
+
+        Backlog backlog = backlog(topic);
+        long first = Math.max(from, backlog.getFirstSequence());
+        long last = backlog.getLastSequence();
+        if (laggards.isLagging(identity, System.currentTimeMillis()) && last - first >= SUMMARY_SIZE) {
+            LOG.debug("Sending the last {} of {} publications to a slow subscriber", SUMMARY_SIZE, last - first + 1);
+            first = last - SUMMARY_SIZE + 1;
+        }
+        snapshots.sendMore(identity);
+        snapshots.sendMore(topic);
+        snapshots.send(header(last, NO_CORRELATION, origin), first <= last ? ZMQ.SNDMORE : 0);
+        for (long sequence = first; sequence <= last; sequence++) {
+            snapshots.sendMore(header(sequence, backlog.getCorrelationId(sequence), origin));
+            snapshots.send(backlog.get(sequence), sequence < last ? ZMQ.SNDMORE : 0);
+        }
+    }
+
+    private Backlog backlog(byte[] topic) {
+        return backlogs.computeIfAbsent(new String(topic, StandardCharsets.UTF_8), t -> new Backlog(backlogSize));
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat03.server.impl;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the requests recently dispatched for each client session, so that a
+ * request sent again because its reply was slow or lost is not published twice.
+ * Request ids grow within a session and a client only has a bounded number of them
+ * outstanding, so a sliding window of ids per session is enough; anything older than
+ * the window has been handled already. Sessions that stay idle for longer than a
+ * request can be retried are forgotten by {@link #prune(long)}.
+ * Instances are thread-safe.
+ *
+ * @author Andres Almiray
+ */
+class RecentRequests {
+    static final long IDLE_MILLIS = 60_000;
+    private static final int WINDOW = 4096;
+
+    private final Map<Long, Window> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Records a request of {@code session}.
+     *
+     * @return {@code true} if the request has not been seen before
+     */
+    boolean firstSeen(long session, long requestId, long now) {
+        Window window = sessions.computeIfAbsent(session, s -> new Window());
+        synchronized (window) {
+            window.lastSeenAt = now;
+            return window.add(requestId);
+        }
+    }
+
+    void prune(long now) {
+        sessions.values().removeIf(window -> {
+            synchronized (window) {
+                return now - window.lastSeenAt >= IDLE_MILLIS;
+            }
+        });
+    }
+
+    private static class Window {
+        private final boolean[] seen = new boolean[WINDOW];
+        private long highest = -1;
+        private long lastSeenAt;
+
+        private boolean add(long requestId) {
+            if (requestId > highest) {
+                for (long id = Math.max(highest + 1, requestId - WINDOW + 1); id < requestId; id++) {
+                    seen[slot(id)] = false;
+                }
+                highest = requestId;
+            } else if (requestId <= highest - WINDOW || seen[slot(requestId)]) {
+                return false;
+            }
+            seen[slot(requestId)] = true;
+            return true;
+        }
+
+        private static int slot(long requestId) {
+            return (int) Math.floorMod(requestId, (long) WINDOW);
+        }
+    }
+}
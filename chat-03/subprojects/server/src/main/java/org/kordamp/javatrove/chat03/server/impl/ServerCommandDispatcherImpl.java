@@ -22,7 +22,7 @@ import com.google.inject.Binding;
 import com.google.inject.Injector;
 import com.google.inject.Key;
 import com.google.inject.TypeLiteral;
-import org.kordamp.javatrove.chat03.Command;
+import org.kordamp.javatrove.chat03.Envelope;
 import org.kordamp.javatrove.chat03.server.CommandExecutionException;
 import org.kordamp.javatrove.chat03.server.ServerCommandDispatcher;
 import org.kordamp.javatrove.chat03.server.ServerCommandHandler;
@@ -52,11 +52,11 @@ public class ServerCommandDispatcherImpl implements ServerCommandDispatcher {
     }
 
     @Override
-    public void dispatch(ZMQ.Socket publisher, Command command) throws CommandExecutionException {
+    public void dispatch(ZMQ.Socket publisher, Envelope envelope, byte[] correlationId, byte[] payload, byte[] trace) throws CommandExecutionException {
         for (ServerCommandHandler handler : commandHandlers) {
-            if (handler.supports(command.getType())) {
+            if (handler.supports(envelope.getType())) {
                 try {
-                    handler.handle(publisher, command);
+                    handler.handle(publisher, envelope, correlationId, payload, trace);
                 } catch (Exception e) {
                     throw new CommandExecutionException(e);
                 }
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat03.server.impl;
+
+import org.kordamp.javatrove.chat03.server.ChatMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zeromq.ZMQ;
+import org.zeromq.ZMQException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Attaches a ZeroMQ monitor to each of the given sockets and counts their accept,
+ * connect and disconnect events. The monitors are attached by the thread that owns
+ * the sockets; the events are read from inproc PAIR sockets by the thread running
+ * this monitor.
+ *
+ * @author Andres Almiray
+ */
+class SocketMonitor implements Runnable {
+    private static final Logger LOG = LoggerFactory.getLogger(SocketMonitor.class);
+    private static final String MONITOR_ENDPOINT = "inproc://monitor-";
+    private static final int EVENTS = ZMQ.EVENT_ACCEPTED | ZMQ.EVENT_CONNECTED | ZMQ.EVENT_DISCONNECTED;
+    private static final AtomicInteger MONITOR_IDS = new AtomicInteger();
+
+    private final ZMQ.Context context;
+    private final ChatMetrics chatMetrics;
+    private final List<ZMQ.Socket> monitors = new ArrayList<>();
+
+    SocketMonitor(ZMQ.Context context, ChatMetrics chatMetrics, ZMQ.Socket... sockets) {
+        this.context = context;
+        this.chatMetrics = chatMetrics;
+        for (ZMQ.Socket socket : sockets) {
+            String endpoint = MONITOR_ENDPOINT + MONITOR_IDS.incrementAndGet();
+            socket.monitor(endpoint, EVENTS);
+            ZMQ.Socket monitor = context.socket(ZMQ.PAIR);
+            monitor.connect(endpoint);
+            monitors.add(monitor);
+        }
+    }
+
+    @Override
+    public void run() {
+        ZMQ.Poller poller = context.poller(monitors.size());
+        monitors.forEach(monitor -> poller.register(monitor, ZMQ.Poller.POLLIN));
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (poller.poll() < 0) {
+                    // the context has been terminated
+                    break;
+                }
+                for (int i = 0; i < monitors.size(); i++) {
+                    if (poller.pollin(i)) {
+                        ZMQ.Event event = ZMQ.Event.recv(monitors.get(i));
+                        if (event != null) {
+                            chatMetrics.socketEvent(event.getEvent());
+                        }
+                    }
+                }
+            }
+        } catch (ZMQException e) {
+            if (e.getErrorCode() != ZMQ.Error.ETERM.getCode()) {
+                LOG.error("Unexpected error", e);
+            }
+        } finally {
+            poller.close();
+            monitors.forEach(ZMQ.Socket::close);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat03.server;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kordamp.javatrove.chat03.ChatUtil;
+import org.kordamp.javatrove.chat03.CommandCodec;
+import org.zeromq.ZMQ;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.inject.name.Names.named;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.kordamp.javatrove.chat03.ChatUtil.connectEndpoint;
+import static org.kordamp.javatrove.chat03.ChatUtil.envelope;
+import static org.kordamp.javatrove.chat03.ChatUtil.messageCommand;
+import static org.kordamp.javatrove.chat03.ChatUtil.toBytes;
+import static org.kordamp.javatrove.chat03.ChatUtil.topic;
+
+/**
+ * A subscriber that stops reading must cost the server no more than its high water
+ * mark, and once it asks for the backlog again and again it only gets a summary.
+ *
+ * @author Andres Almiray
+ */
+public class StuckSubscriberTest {
+    private static final int PORT = 56300;
+    private static final int PUBLISHER_HWM = 100;
+    private static final int PAYLOAD_SIZE = 10 * 1024;
+    private static final int BURSTS = 40;
+    private static final int BURST_SIZE = 500;
+    private static final int SUMMARY_SIZE = 16;
+    private static final long MAX_GROWTH_BYTES = 32L * 1024 * 1024;
+
+    private ChatServer server;
+    private CommandCodec codec;
+    private ZMQ.Context context;
+
+    @Before
+    public void setup() {
+        Injector injector = Guice.createInjector(new ServerModule() {
+            @Override
+            protected void bindServerPort() {
+                bindConstant()
+                    .annotatedWith(named(ChatUtil.SERVER_PORT_KEY))
+                    .to(PORT);
+            }
+
+            @Override
+            protected void bindPublisherHwm() {
+                bindConstant()
+                    .annotatedWith(named(ChatUtil.PUBLISHER_HWM_KEY))
+                    .to(PUBLISHER_HWM);
+            }
+        });
+        server = injector.getInstance(ChatServer.class);
+        server.start();
+        codec = injector.getInstance(CommandCodec.class);
+        context = ZMQ.context(1);
+    }
+
+    @After
+    public void cleanup() {
+        context.term();
+        server.stop();
+    }
+
+    @Test
+    public void stuck_subscriber_is_bounded_and_served_a_summary() throws Exception {
+        // given: a subscriber that never reads
+        ZMQ.Socket stuck = context.socket(ZMQ.SUB);
+        stuck.setLinger(0);
+        stuck.setRcvHWM(PUBLISHER_HWM);
+        stuck.setReceiveBufferSize(4096);
+        stuck.connect(connectEndpoint(ChatUtil.TRANSPORT, "localhost", PORT + 1));
+        stuck.subscribe(topic(ChatUtil.DEFAULT_ROOM));
+        Thread.sleep(300);
+
+        // when: publishing far more than the high water mark
+        ZMQ.Socket sender = context.socket(ZMQ.DEALER);
+        sender.setLinger(0);
+        sender.connect(connectEndpoint(ChatUtil.TRANSPORT, "localhost", PORT));
+        byte[] envelope = envelope(messageCommand("", ChatUtil.DEFAULT_ROOM), "stuck").toBytes();
+        byte[] payload = codec.encode(messageCommand(new String(new char[PAYLOAD_SIZE]).replace('\0', 'x'), ChatUtil.DEFAULT_ROOM));
+        List<Long> heap = new ArrayList<>();
+        for (int burst = 0; burst < BURSTS; burst++) {
+            for (int i = 0; i < BURST_SIZE; i++) {
+                sender.sendMore("");
+                sender.sendMore(envelope);
+                sender.send(payload);
+            }
+            for (int i = 0; i < BURST_SIZE; i++) {
+                sender.recv();
+                sender.recv();
+            }
+            heap.add(usedHeap());
+        }
+
+        // then: memory levels off once the queues are full
+        long settled = heap.get(BURSTS / 4);
+        long peak = heap.subList(BURSTS / 4, BURSTS).stream().mapToLong(Long::longValue).max().getAsLong();
+        assertThat(peak - settled, lessThan(MAX_GROWTH_BYTES));
+
+        // when: the subscriber keeps asking for the backlog it missed
+        ZMQ.Socket backlog = context.socket(ZMQ.DEALER);
+        backlog.setLinger(0);
+        backlog.connect(connectEndpoint(ChatUtil.TRANSPORT, "localhost", PORT + 2));
+        List<Integer> replies = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            backlog.sendMore(topic(ChatUtil.DEFAULT_ROOM));
+            backlog.send(toBytes(1));
+            backlog.recv();
+            backlog.recv();
+            int publications = 0;
+            while (backlog.hasReceiveMore()) {
+                backlog.recv();
+                backlog.recv();
+                publications++;
+            }
+            replies.add(publications);
+        }
+
+        // then: it is treated as a laggard and only gets the most recent publications
+        assertEquals(ChatUtil.BACKLOG_SIZE, (int) replies.get(0));
+        assertEquals(SUMMARY_SIZE, (int) replies.get(3));
+
+        stuck.close();
+        sender.close();
+        backlog.close();
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 2; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
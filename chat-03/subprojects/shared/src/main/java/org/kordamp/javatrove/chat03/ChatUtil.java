@@ -18,6 +18,11 @@
  */
 package org.kordamp.javatrove.chat03;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+
 import static org.kordamp.javatrove.chat03.Command.Type.ERROR;
 import static org.kordamp.javatrove.chat03.Command.Type.LOGIN;
 import static org.kordamp.javatrove.chat03.Command.Type.LOGOUT;
@@ -29,33 +34,242 @@ import static org.kordamp.javatrove.chat03.Command.Type.MESSAGE;
 public class ChatUtil {
     public static final String SERVER_PORT_KEY = "_SERVER_PORT_";
     public static final int SERVER_PORT = 54555;
+    public static final String SERVER_PORT_PROPERTY = "chat.port";
+    public static final String NODE_ADDRESS_KEY = "_NODE_ADDRESS_";
+    public static final String NODE_ADDRESS_PROPERTY = "chat.node.address";
+    public static final String BACKLOG_SIZE_KEY = "_BACKLOG_SIZE_";
+    public static final int BACKLOG_SIZE = 1024;
+    public static final String PUBLISHER_HWM_KEY = "_PUBLISHER_HWM_";
+    public static final String PUBLISHER_HWM_PROPERTY = "chat.publisher.hwm";
+    public static final int PUBLISHER_HWM = 1000;
+    public static final String SUBSCRIBER_HWM_KEY = "_SUBSCRIBER_HWM_";
+    public static final String SUBSCRIBER_HWM_PROPERTY = "chat.subscriber.hwm";
+    public static final int SUBSCRIBER_HWM = 1000;
+    public static final String CREDITS_KEY = "_CREDITS_";
+    public static final String CREDITS_PROPERTY = "chat.client.credits";
+    public static final int CREDITS = 64;
+    public static final String FAILOVER_KEY = "_FAILOVER_";
+    public static final String FAILOVER_PROPERTY = "chat.failover";
+    public static final String TRANSPORT_KEY = "_TRANSPORT_";
+    public static final String TRANSPORT_PROPERTY = "chat.transport";
+    public static final String TRANSPORT = "tcp";
+    public static final String IO_THREADS_KEY = "_IO_THREADS_";
+    public static final String IO_THREADS_PROPERTY = "chat.io.threads";
+    public static final String METRICS_INTERVAL_KEY = "_METRICS_INTERVAL_";
+    public static final String METRICS_INTERVAL_PROPERTY = "chat.metrics.interval";
+    public static final int METRICS_INTERVAL = 60;
+    public static final int LOG_SAMPLE_RATE = 1024;
+    public static final String TRACE_KEY = "_TRACE_";
+    public static final String TRACE_PROPERTY = "chat.trace";
+    public static final int TRACE_CLIENT_SEND = 0;
+    public static final int TRACE_SERVER_RECEIVE = 1;
+    public static final int TRACE_SERVER_PUBLISH = 2;
+    public static final String BROKER_KEY = "_BROKER_";
+    public static final String BROKER_PROPERTY = "chat.broker";
+    public static final String BROKER_PORT_KEY = "_BROKER_PORT_";
+    public static final int BROKER_PORT = 54565;
+    public static final String BROKER_PORT_PROPERTY = "chat.broker.port";
+    public static final String WORKERS_KEY = "_WORKERS_";
+    public static final int WORKERS = Runtime.getRuntime().availableProcessors();
+    public static final int BATCH_SIZE = 128;
     public static final String NAME_SEPARATOR = ">";
+    public static final String DEFAULT_ROOM = "lobby";
+    public static final char TOPIC_TERMINATOR = '\0';
+    public static final char EPOCH_SEPARATOR = '@';
+    public static final int CORRELATION_SIZE = 2 * Long.BYTES;
+    public static final String DUPLICATE_REPLY = "duplicate";
+
+    /**
+     * Endpoint a server binds to for {@code port}. Supported transports are {@code tcp},
+     * {@code ipc} and {@code inproc}; the latter only reaches sockets created by the
+     * same context.
+     */
+    public static String bindEndpoint(String transport, int port) {
+        return endpoint(transport, "*", port);
+    }
+
+    /**
+     * Endpoint a client connects to for {@code port} at {@code host}. The host is only
+     * significant for {@code tcp}.
+     */
+    public static String connectEndpoint(String transport, String host, int port) {
+        return endpoint(transport, host, port);
+    }
+
+    private static String endpoint(String transport, String host, int port) {
+        switch (transport) {
+            case "tcp":
+                return "tcp://" + host + ":" + port;
+            case "ipc":
+                return "ipc://" + System.getProperty("java.io.tmpdir") + "/chat-" + port;
+            case "inproc":
+                return "inproc://chat-" + port;
+            default:
+                throw new IllegalArgumentException("Unsupported transport " + transport);
+        }
+    }
+
+    /**
+     * Key of the publications of {@code room}. Subscriptions match on prefixes, so the
+     * key is terminated to keep a room from also receiving the traffic of longer names.
+     */
+    public static byte[] topic(String room) {
+        return (roomName(room) + TOPIC_TERMINATOR).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Header frame of a publication: its sequence number within the room, the correlation
+     * id of the request it publishes, zeroed if there is none, and the origin of the server
+     * that sequenced it, which also serves its backlog.
+     */
+    public static byte[] header(long sequence, byte[] correlation, byte[] origin) {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + CORRELATION_SIZE + origin.length)
+            .putLong(sequence);
+        if (correlation.length == CORRELATION_SIZE) {
+            buffer.put(correlation);
+        } else {
+            buffer.position(Long.BYTES + CORRELATION_SIZE);
+        }
+        return buffer.put(origin).array();
+    }
+
+    /**
+     * Identifies a running server: its address followed by the time it started. Sequence
+     * numbers start over whenever a server restarts, so they are only comparable within
+     * the same origin.
+     */
+    public static String origin(String address, long epoch) {
+        return address + EPOCH_SEPARATOR + epoch;
+    }
+
+    public static String addressOf(String origin) {
+        int separator = origin.lastIndexOf(EPOCH_SEPARATOR);
+        return separator < 0 ? origin : origin.substring(0, separator);
+    }
+
+    public static long epochOf(String origin) {
+        int separator = origin.lastIndexOf(EPOCH_SEPARATOR);
+        return separator < 0 ? 0 : Long.parseLong(origin.substring(separator + 1));
+    }
+
+    public static long sequenceOf(byte[] header) {
+        return ByteBuffer.wrap(header).getLong();
+    }
+
+    public static byte[] correlationOf(byte[] header) {
+        return Arrays.copyOfRange(header, Long.BYTES, Long.BYTES + CORRELATION_SIZE);
+    }
+
+    public static String originOf(byte[] header) {
+        int offset = Long.BYTES + CORRELATION_SIZE;
+        return new String(header, offset, header.length - offset, StandardCharsets.UTF_8);
+    }
+
+    public static byte[] toBytes(long value) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(value).array();
+    }
+
+    public static long toLong(byte[] bytes) {
+        return ByteBuffer.wrap(bytes).getLong();
+    }
+
+    /**
+     * Correlation frame of a request: the session of the client that sent it, which
+     * outlives reconnections and failover, followed by the id of the request within it.
+     */
+    public static byte[] correlation(long session, long requestId) {
+        return ByteBuffer.allocate(CORRELATION_SIZE).putLong(session).putLong(requestId).array();
+    }
+
+    public static long sessionOf(byte[] correlation) {
+        return ByteBuffer.wrap(correlation).getLong(0);
+    }
+
+    public static long requestIdOf(byte[] correlation) {
+        return ByteBuffer.wrap(correlation).getLong(Long.BYTES);
+    }
+
+    /**
+     * Trace frame of a request, holding the times at which the client sent it and the
+     * server received and published it. The frame travels with the request and its
+     * publication; each hop stamps its slot in place.
+     */
+    public static byte[] trace(long clientSend) {
+        byte[] trace = new byte[Long.BYTES * (TRACE_SERVER_PUBLISH + 1)];
+        stamp(trace, TRACE_CLIENT_SEND, clientSend);
+        return trace;
+    }
+
+    public static void stamp(byte[] trace, int slot, long nanos) {
+        ByteBuffer.wrap(trace).putLong(slot * Long.BYTES, nanos);
+    }
+
+    public static long stampOf(byte[] trace, int slot) {
+        return ByteBuffer.wrap(trace).getLong(slot * Long.BYTES);
+    }
+
+    /**
+     * Wall clock time in nanoseconds. Unlike {@code System.nanoTime()} it can be compared
+     * across processes, as long as their clocks are synchronized.
+     */
+    public static long epochNanos() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000_000L + now.getNano();
+    }
+
+    public static String roomName(String room) {
+        return room == null || room.isEmpty() ? DEFAULT_ROOM : room;
+    }
+
+    public static Envelope envelope(Command command, String sender) {
+        return Envelope.builder()
+            .type(command.getType())
+            .sender(sender)
+            .room(command.getRoom())
+            .build();
+    }
 
     public static Command loginCommand(String name) {
+        return loginCommand(name, DEFAULT_ROOM);
+    }
+
+    public static Command loginCommand(String name, String room) {
         return Command.builder()
             .type(LOGIN)
             .payload(name)
+            .room(room)
             .build();
     }
 
     public static Command logoutCommand(String name) {
+        return logoutCommand(name, DEFAULT_ROOM);
+    }
+
+    public static Command logoutCommand(String name, String room) {
         return Command.builder()
             .type(LOGOUT)
             .payload(name)
+            .room(room)
             .build();
     }
 
     public static Command messageCommand(String message) {
+        return messageCommand(message, DEFAULT_ROOM);
+    }
+
+    public static Command messageCommand(String message, String room) {
         return Command.builder()
             .type(MESSAGE)
             .payload(message)
+            .room(room)
             .build();
     }
 
-    public static Command errorCommand(String message) {
+    public static Command errorCommand(String message, String room) {
         return Command.builder()
             .type(ERROR)
             .payload(message)
+            .room(room)
             .build();
     }
 }
@@ -30,17 +30,20 @@ public class Command {
         LOGIN,
         LOGOUT,
         MESSAGE,
-        ERROR
+        ERROR,
+        HEARTBEAT
     }
 
     private Type type;
     private String payload;
+    private String room;
 
     @Builder
-    public static Command create(Type type, String payload) {
+    public static Command create(Type type, String payload, String room) {
         Command cmd = new Command();
         cmd.setType(type);
         cmd.setPayload(payload);
+        cmd.setRoom(room);
         return cmd;
     }
 }
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat03;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Routing information sent in its own frame ahead of an encoded {@code Command}, so
+ * that the server can route and republish the command without decoding it.
+ * The frame holds the ordinal of the type followed by the sender and the room, each
+ * as a 2 byte length and UTF-8 bytes.
+ *
+ * @author Andres Almiray
+ */
+@Data
+public class Envelope {
+    private static final Command.Type[] TYPES = Command.Type.values();
+
+    private Command.Type type;
+    private String sender;
+    private String room;
+
+    @Builder
+    public static Envelope create(Command.Type type, String sender, String room) {
+        Envelope envelope = new Envelope();
+        envelope.setType(type);
+        envelope.setSender(sender);
+        envelope.setRoom(room);
+        return envelope;
+    }
+
+    public byte[] toBytes() {
+        byte[] senderBytes = bytesOf(sender);
+        byte[] roomBytes = bytesOf(room);
+        return ByteBuffer.allocate(1 + Short.BYTES + senderBytes.length + Short.BYTES + roomBytes.length)
+            .put((byte) type.ordinal())
+            .putShort((short) senderBytes.length)
+            .put(senderBytes)
+            .putShort((short) roomBytes.length)
+            .put(roomBytes)
+            .array();
+    }
+
+    public static Envelope fromBytes(byte[] bytes) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            int ordinal = buffer.get();
+            if (ordinal < 0 || ordinal >= TYPES.length) {
+                throw new IllegalArgumentException("Unknown command type " + ordinal);
+            }
+            return create(TYPES[ordinal], stringOf(buffer), stringOf(buffer));
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("Truncated envelope", e);
+        }
+    }
+
+    private static byte[] bytesOf(String value) {
+        byte[] bytes = value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Envelope value is too long: " + value);
+        }
+        return bytes;
+    }
+
+    private static String stringOf(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
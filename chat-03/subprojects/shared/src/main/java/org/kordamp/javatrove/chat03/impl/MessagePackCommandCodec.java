@@ -0,0 +1,139 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat03.impl;
+
+import org.kordamp.javatrove.chat03.Command;
+import org.kordamp.javatrove.chat03.CommandCodec;
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessageFormat;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessageUnpacker;
+import org.msgpack.core.buffer.ArrayBufferInput;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes commands as the same MessagePack map the Jackson mapper produces, except that
+ * the type is written as its ordinal. Jackson accepts ordinals for enums, and this codec
+ * accepts type names, so both remain interchangeable on the wire. Packers and unpackers
+ * are reused per thread.
+ *
+ * @author Andres Almiray
+ */
+public class MessagePackCommandCodec implements CommandCodec {
+    private static final byte[] TYPE = "type".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PAYLOAD = "payload".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ROOM = "room".getBytes(StandardCharsets.UTF_8);
+    private static final Command.Type[] TYPES = Command.Type.values();
+
+    private final ThreadLocal<MessageBufferPacker> packers = ThreadLocal.withInitial(MessagePack::newDefaultBufferPacker);
+    private final ThreadLocal<Decoder> decoders = ThreadLocal.withInitial(Decoder::new);
+
+    @Override
+    public byte[] encode(Command command) {
+        MessageBufferPacker packer = packers.get();
+        packer.clear();
+        try {
+            packer.packMapHeader(3);
+            packKey(packer, TYPE);
+            if (command.getType() != null) {
+                packer.packInt(command.getType().ordinal());
+            } else {
+                packer.packNil();
+            }
+            packKey(packer, PAYLOAD);
+            packString(packer, command.getPayload());
+            packKey(packer, ROOM);
+            packString(packer, command.getRoom());
+            return packer.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Command decode(byte[] bytes) throws IOException {
+        return decoders.get().decode(bytes);
+    }
+
+    private static void packKey(MessageBufferPacker packer, byte[] key) throws IOException {
+        packer.packRawStringHeader(key.length);
+        packer.writePayload(key);
+    }
+
+    private static void packString(MessageBufferPacker packer, String value) throws IOException {
+        if (value != null) {
+            packer.packString(value);
+        } else {
+            packer.packNil();
+        }
+    }
+
+    private static class Decoder {
+        private final ArrayBufferInput input = new ArrayBufferInput(new byte[0]);
+        private final MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(input);
+
+        private Command decode(byte[] bytes) throws IOException {
+            input.reset(bytes);
+            unpacker.reset(input);
+
+            Command command = new Command();
+            int size = unpacker.unpackMapHeader();
+            for (int i = 0; i < size; i++) {
+                String key = unpacker.unpackString();
+                if (unpacker.getNextFormat() == MessageFormat.NIL) {
+                    unpacker.unpackNil();
+                    continue;
+                }
+                switch (key) {
+                    case "type":
+                        command.setType(unpackType());
+                        break;
+                    case "payload":
+                        command.setPayload(unpacker.unpackString());
+                        break;
+                    case "room":
+                        command.setRoom(unpacker.unpackString());
+                        break;
+                    default:
+                        unpacker.skipValue();
+                }
+            }
+            return command;
+        }
+
+        private Command.Type unpackType() throws IOException {
+            if (unpacker.getNextFormat().getValueType().isIntegerType()) {
+                int ordinal = unpacker.unpackInt();
+                if (ordinal < 0 || ordinal >= TYPES.length) {
+                    throw new IOException("Unknown command type " + ordinal);
+                }
+                return TYPES[ordinal];
+            }
+            String name = unpacker.unpackString();
+            try {
+                return Command.Type.valueOf(name);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Unknown command type " + name, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat03;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kordamp.javatrove.chat03.client.AppModule;
+import org.kordamp.javatrove.chat03.client.ChatClient;
+import org.kordamp.javatrove.chat03.client.model.AppModel;
+import org.kordamp.javatrove.chat03.server.ChatBroker;
+import org.kordamp.javatrove.chat03.server.ChatServer;
+import org.kordamp.javatrove.chat03.server.ServerModule;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.inject.name.Names.named;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Two servers federated through a broker: a message sent to one server reaches a
+ * client logged in to the other.
+ *
+ * @author Andres Almiray
+ */
+public class BrokerTest {
+    private static final String BROKER = "localhost:" + ChatUtil.BROKER_PORT;
+    private static final int SERVER_A_PORT = 54555;
+    private static final int SERVER_B_PORT = 54575;
+
+    private ChatBroker broker;
+    private final List<ChatServer> servers = new ArrayList<>();
+    private final Map<String, ChatClient> clients = new LinkedHashMap<>();
+
+    @Before
+    public void setup() {
+        broker = serverInjector(0).getInstance(ChatBroker.class);
+        broker.start();
+        for (int port : new int[]{SERVER_A_PORT, SERVER_B_PORT}) {
+            ChatServer server = serverInjector(port).getInstance(ChatServer.class);
+            server.start();
+            servers.add(server);
+        }
+    }
+
+    @After
+    public void cleanup() {
+        clients.forEach((name, client) -> client.logout(name));
+        servers.forEach(ChatServer::stop);
+        broker.stop();
+    }
+
+    @Test
+    public void message_sent_through_one_server_reaches_a_client_of_the_other() {
+        // given:
+        Injector alice = clientInjector();
+        Injector bob = clientInjector();
+        ChatClient aliceClient = login(alice, SERVER_A_PORT, "Alice");
+        login(bob, SERVER_B_PORT, "Bob");
+        AppModel bobModel = bob.getInstance(AppModel.class);
+
+        // when:
+        // subscriptions travel through the broker asynchronously, keep sending until one arrives
+        AtomicInteger attempt = new AtomicInteger();
+        await().atMost(10, SECONDS)
+            .pollInterval(200, MILLISECONDS)
+            .until(() -> {
+                aliceClient.send("Alice", "hello " + attempt.incrementAndGet());
+                return bobModel.getMessages().stream().anyMatch(m -> m.startsWith("Alice> hello"));
+            });
+
+        // then:
+        await().atMost(5, SECONDS)
+            .until(() -> bobModel.getMessages().contains("Alice> hello " + attempt.get()));
+    }
+
+    private ChatClient login(Injector injector, int port, String name) {
+        ChatClient client = injector.getInstance(ChatClient.class);
+        client.login("localhost", port, name);
+        clients.put(name, client);
+        return client;
+    }
+
+    private static Injector serverInjector(int port) {
+        return Guice.createInjector(new ServerModule() {
+            @Override
+            protected void bindServerPort() {
+                bindConstant()
+                    .annotatedWith(named(ChatUtil.SERVER_PORT_KEY))
+                    .to(port);
+            }
+
+            @Override
+            protected void bindBroker() {
+                bindConstant()
+                    .annotatedWith(named(ChatUtil.BROKER_KEY))
+                    .to(BROKER);
+            }
+        });
+    }
+
+    private static Injector clientInjector() {
+        return Guice.createInjector(new AppModule() {
+            @Override
+            protected void bindBroker() {
+                bindConstant()
+                    .annotatedWith(named(ChatUtil.BROKER_KEY))
+                    .to(BROKER);
+            }
+        });
+    }
+}
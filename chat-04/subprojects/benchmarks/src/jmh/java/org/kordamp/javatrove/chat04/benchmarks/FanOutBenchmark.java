@@ -0,0 +1,105 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat04.benchmarks;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import io.netty.channel.DefaultChannelId;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.kordamp.javatrove.chat04.ChatChannelInitializer;
+import org.kordamp.javatrove.chat04.Command;
+import org.kordamp.javatrove.chat04.server.ChatBroadcaster;
+import org.kordamp.javatrove.chat04.server.ServerModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.kordamp.javatrove.chat04.ChatUtil.messageCommand;
+
+/**
+ * Measures how many commands per second reach every one of 1000 and 10000 channels.
+ * Channels are embedded, each with the server pipeline, so only the cost of encoding
+ * and writing is measured. {@code broadcast} encodes each command once and shares the
+ * frame; {@code encodePerChannel} writes the command to each channel, which encodes it
+ * once per recipient.
+ *
+ * @author Andres Almiray
+ */
+public class FanOutBenchmark {
+    @State(Scope.Benchmark)
+    public static class FanOutState {
+        @Param({"1000", "10000"})
+        public int channels;
+
+        private ChatBroadcaster broadcaster;
+        private final List<EmbeddedChannel> members = new ArrayList<>();
+        private final Command command = messageCommand("benchmark> hello");
+
+        @Setup(Level.Trial)
+        public void setup() {
+            Injector injector = Guice.createInjector(new ServerModule());
+            broadcaster = injector.getInstance(ChatBroadcaster.class);
+            ChatChannelInitializer channelInitializer = injector.getInstance(ChatChannelInitializer.class);
+            for (int i = 0; i < channels; i++) {
+                members.add(new EmbeddedChannel(DefaultChannelId.newInstance(), channelInitializer));
+            }
+            if (broadcaster.size() != channels) {
+                throw new IllegalStateException("Expected " + channels + " members but got " + broadcaster.size());
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            members.forEach(EmbeddedChannel::finishAndReleaseAll);
+        }
+
+        private void drain() {
+            members.forEach(EmbeddedChannel::releaseOutbound);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void broadcast(FanOutState state) {
+        state.broadcaster.broadcast(state.command);
+        state.drain();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void encodePerChannel(FanOutState state) {
+        for (EmbeddedChannel channel : state.members) {
+            channel.writeAndFlush(state.command);
+        }
+        state.drain();
+    }
+}
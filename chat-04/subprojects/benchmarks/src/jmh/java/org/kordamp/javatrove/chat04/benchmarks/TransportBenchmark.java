@@ -0,0 +1,252 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat04.benchmarks;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.kordamp.javatrove.chat04.ChatUtil;
+import org.kordamp.javatrove.chat04.Command;
+import org.kordamp.javatrove.chat04.server.ChatBroadcaster;
+import org.kordamp.javatrove.chat04.server.ChatServer;
+import org.kordamp.javatrove.chat04.server.ServerModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.inject.name.Names.named;
+import static org.kordamp.javatrove.chat04.ChatUtil.messageCommand;
+
+/**
+ * Compares the NIO and epoll transports over loopback TCP. {@code connect} measures
+ * connections established per second, opened in bursts of 100 like a reconnect storm,
+ * with one acceptor or with four bound through {@code SO_REUSEPORT}; NIO does not
+ * support the option, so it always binds a single acceptor. {@code broadcast} measures
+ * commands per second delivered to 100 and 1000 connected clients.
+ *
+ * @author Andres Almiray
+ */
+public class TransportBenchmark {
+    private static final int PORT = 54656;
+    private static final int BURST = 100;
+
+    @State(Scope.Benchmark)
+    public abstract static class ServerState {
+        @Param({"nio", "epoll"})
+        public String transport;
+
+        protected ChatServer server;
+        protected ChatBroadcaster broadcaster;
+        protected EventLoopGroup clientGroup;
+        protected Bootstrap bootstrap;
+        private ExecutorService executorService;
+
+        protected void start(ChannelHandler clientHandler, int acceptors) throws Exception {
+            Injector injector = Guice.createInjector(new ServerModule() {
+                @Override
+                protected void bindServerPort() {
+                    bindConstant()
+                        .annotatedWith(named(ChatUtil.SERVER_PORT_KEY))
+                        .to(PORT);
+                }
+
+                @Override
+                protected void bindTransport() {
+                    bindConstant()
+                        .annotatedWith(named(ChatUtil.TRANSPORT_KEY))
+                        .to(transport);
+                }
+
+                @Override
+                protected void bindBossThreads() {
+                    bindConstant()
+                        .annotatedWith(named(ChatUtil.BOSS_THREADS_KEY))
+                        .to(acceptors);
+                }
+
+                @Override
+                protected void bindReusePort() {
+                    bindConstant()
+                        .annotatedWith(named(ChatUtil.REUSE_PORT_KEY))
+                        .to(acceptors > 1);
+                }
+            });
+            server = injector.getInstance(ChatServer.class);
+            broadcaster = injector.getInstance(ChatBroadcaster.class);
+            executorService = Executors.newSingleThreadExecutor();
+            executorService.submit(server::start);
+
+            boolean epoll = "epoll".equals(transport);
+            clientGroup = epoll ? new EpollEventLoopGroup(2) : new NioEventLoopGroup(2);
+            bootstrap = new Bootstrap()
+                .group(clientGroup)
+                .channel(epoll ? EpollSocketChannel.class : NioSocketChannel.class)
+                .option(ChannelOption.SO_LINGER, 0)
+                .handler(clientHandler);
+            awaitServer();
+        }
+
+        private void awaitServer() throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (true) {
+                try {
+                    bootstrap.connect("localhost", PORT).sync().channel().close().sync();
+                    return;
+                } catch (Exception e) {
+                    if (System.currentTimeMillis() > deadline) {
+                        throw new IllegalStateException("Server did not start", e);
+                    }
+                    Thread.sleep(100);
+                }
+            }
+        }
+
+        protected void stop() throws Exception {
+            clientGroup.shutdownGracefully().sync();
+            server.stop();
+            executorService.shutdownNow();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ConnectState extends ServerState {
+        @Param({"1", "4"})
+        public int acceptors;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            start(new ByteCounter(new AtomicLong()), acceptors);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            stop();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class BroadcastState extends ServerState {
+        @Param({"100", "1000"})
+        public int clients;
+
+        private final Command command = messageCommand("benchmark> hello");
+        private final AtomicLong received = new AtomicLong();
+        private final List<Channel> channels = new ArrayList<>();
+        private long expected;
+        private int frameLength;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            start(new ByteCounter(received), 1);
+            for (int i = 0; i < clients; i++) {
+                channels.add(bootstrap.connect("localhost", PORT).sync().channel());
+            }
+            while (broadcaster.size() != clients) {
+                Thread.sleep(10);
+            }
+
+            broadcaster.broadcast(command);
+            while (received.get() < clients) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(100);
+            frameLength = (int) (received.get() / clients);
+            expected = received.get();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            for (Channel channel : channels) {
+                channel.close().sync();
+            }
+            stop();
+        }
+    }
+
+    @ChannelHandler.Sharable
+    private static class ByteCounter extends ChannelInboundHandlerAdapter {
+        private final AtomicLong received;
+
+        private ByteCounter(AtomicLong received) {
+            this.received = received;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ByteBuf buf = (ByteBuf) msg;
+            received.addAndGet(buf.readableBytes());
+            buf.release();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BURST)
+    public void connect(ConnectState state) throws Exception {
+        List<ChannelFuture> futures = new ArrayList<>(BURST);
+        for (int i = 0; i < BURST; i++) {
+            futures.add(state.bootstrap.connect("localhost", PORT));
+        }
+        for (ChannelFuture future : futures) {
+            future.sync().channel().close();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BURST)
+    public void broadcast(BroadcastState state) {
+        for (int i = 0; i < BURST; i++) {
+            state.broadcaster.broadcast(state.command);
+        }
+        state.expected += (long) BURST * state.clients * state.frameLength;
+        while (state.received.get() < state.expected) {
+            Thread.onSpinWait();
+        }
+    }
+}
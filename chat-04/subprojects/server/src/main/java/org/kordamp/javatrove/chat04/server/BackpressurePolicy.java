@@ -0,0 +1,41 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat04.server;
+
+/**
+ * What happens to commands written to a channel whose outbound buffer is above its
+ * high water mark, usually because the client does not read fast enough.
+ *
+ * @author Andres Almiray
+ */
+public enum BackpressurePolicy {
+    /**
+     * Holds commands back until the channel is writable again, up to a bound; commands
+     * beyond the bound are dropped.
+     */
+    QUEUE,
+    /**
+     * Drops commands until the channel is writable again.
+     */
+    DROP,
+    /**
+     * Closes the channel as soon as it stops being writable.
+     */
+    CLOSE;
+}
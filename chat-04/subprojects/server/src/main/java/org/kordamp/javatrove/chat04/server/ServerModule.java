@@ -28,8 +28,11 @@ import org.kordamp.javatrove.chat04.impl.ChatChannelInitializerImpl;
 import org.kordamp.javatrove.chat04.impl.CommandDecoderImpl;
 import org.kordamp.javatrove.chat04.impl.CommandEncoderImpl;
 import org.kordamp.javatrove.chat04.impl.ObjectMapperProvider;
+import org.kordamp.javatrove.chat04.server.impl.BackpressureMetricsImpl;
+import org.kordamp.javatrove.chat04.server.impl.ChannelGroupBroadcaster;
 import org.kordamp.javatrove.chat04.server.impl.ChatServerImpl;
 import org.kordamp.javatrove.chat04.server.impl.ServerChatHandlerImpl;
+import org.kordamp.javatrove.chat04.server.impl.ServerTransportProvider;
 import ru.vyarus.guice.ext.ExtAnnotationsModule;
 
 import javax.inject.Singleton;
@@ -48,9 +51,18 @@ public class ServerModule extends ExtAnnotationsModule {
     protected final void configure() {
         super.configure();
         bindServerPort();
+        bindTransport();
+        bindBossThreads();
+        bindWorkerThreads();
+        bindReusePort();
+        bindServerTransport();
+        bindWriteBufferWaterMark();
+        bindBackpressure();
+        bindBackpressureMetrics();
         bindChatServer();
         bindChannelInitializer();
         bindChannelHandler();
+        bindChatBroadcaster();
         bindCommandEncoder();
         bindCommandDecoder();
         bindObjectMapper();
@@ -62,6 +74,60 @@ public class ServerModule extends ExtAnnotationsModule {
             .to(ChatUtil.SERVER_PORT);
     }
 
+    protected void bindTransport() {
+        bindConstant()
+            .annotatedWith(named(ChatUtil.TRANSPORT_KEY))
+            .to(System.getProperty(ChatUtil.TRANSPORT_PROPERTY, ChatUtil.TRANSPORT));
+    }
+
+    protected void bindBossThreads() {
+        bindConstant()
+            .annotatedWith(named(ChatUtil.BOSS_THREADS_KEY))
+            .to(Integer.getInteger(ChatUtil.BOSS_THREADS_PROPERTY, ChatUtil.BOSS_THREADS));
+    }
+
+    protected void bindWorkerThreads() {
+        bindConstant()
+            .annotatedWith(named(ChatUtil.WORKER_THREADS_KEY))
+            .to(Integer.getInteger(ChatUtil.WORKER_THREADS_PROPERTY, ChatUtil.WORKER_THREADS));
+    }
+
+    protected void bindReusePort() {
+        bindConstant()
+            .annotatedWith(named(ChatUtil.REUSE_PORT_KEY))
+            .to(Boolean.getBoolean(ChatUtil.REUSE_PORT_PROPERTY));
+    }
+
+    protected void bindServerTransport() {
+        bind(ServerTransport.class)
+            .toProvider(ServerTransportProvider.class)
+            .in(Singleton.class);
+    }
+
+    protected void bindWriteBufferWaterMark() {
+        bindConstant()
+            .annotatedWith(named(ChatUtil.WRITE_BUFFER_LOW_KEY))
+            .to(Integer.getInteger(ChatUtil.WRITE_BUFFER_LOW_PROPERTY, ChatUtil.WRITE_BUFFER_LOW));
+        bindConstant()
+            .annotatedWith(named(ChatUtil.WRITE_BUFFER_HIGH_KEY))
+            .to(Integer.getInteger(ChatUtil.WRITE_BUFFER_HIGH_PROPERTY, ChatUtil.WRITE_BUFFER_HIGH));
+    }
+
+    protected void bindBackpressure() {
+        bindConstant()
+            .annotatedWith(named(ChatUtil.BACKPRESSURE_KEY))
+            .to(BackpressurePolicy.valueOf(System.getProperty(ChatUtil.BACKPRESSURE_PROPERTY, ChatUtil.BACKPRESSURE).toUpperCase()));
+        bindConstant()
+            .annotatedWith(named(ChatUtil.BACKPRESSURE_QUEUE_KEY))
+            .to(Integer.getInteger(ChatUtil.BACKPRESSURE_QUEUE_PROPERTY, ChatUtil.BACKPRESSURE_QUEUE));
+    }
+
+    protected void bindBackpressureMetrics() {
+        bind(BackpressureMetrics.class)
+            .to(BackpressureMetricsImpl.class)
+            .in(Singleton.class);
+    }
+
     protected void bindChatServer() {
         bind(ChatServer.class)
             .to(ChatServerImpl.class)
@@ -88,6 +154,12 @@ public class ServerModule extends ExtAnnotationsModule {
             .to(ServerChatHandlerImpl.class);
     }
 
+    protected void bindChatBroadcaster() {
+        bind(ChatBroadcaster.class)
+            .to(ChannelGroupBroadcaster.class)
+            .in(Singleton.class);
+    }
+
     protected void bindObjectMapper() {
         bind(ObjectMapper.class)
             .toProvider(ObjectMapperProvider.class)
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat04.server;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+
+/**
+ * The Netty transport a server accepts and serves connections with.
+ *
+ * @author Andres Almiray
+ */
+public interface ServerTransport {
+    String getName();
+
+    /**
+     * @param threads the number of threads, {@code 0} for Netty's default
+     */
+    EventLoopGroup newEventLoopGroup(int threads);
+
+    Class<? extends ServerChannel> getServerChannelClass();
+
+    /**
+     * Lets several server channels bind the same port, so that the kernel spreads
+     * incoming connections over them.
+     *
+     * @return {@code false} if the transport does not support {@code SO_REUSEPORT}
+     */
+    boolean enableReusePort(ServerBootstrap bootstrap);
+}
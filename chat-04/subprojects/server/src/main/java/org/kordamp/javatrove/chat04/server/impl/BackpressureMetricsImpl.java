@@ -0,0 +1,62 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat04.server.impl;
+
+import org.kordamp.javatrove.chat04.server.BackpressureMetrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Andres Almiray
+ */
+public class BackpressureMetricsImpl implements BackpressureMetrics {
+    private final AtomicInteger unwritableChannels = new AtomicInteger();
+    private final LongAdder droppedMessages = new LongAdder();
+
+    @Override
+    public void unwritable() {
+        unwritableChannels.incrementAndGet();
+    }
+
+    @Override
+    public void writable() {
+        unwritableChannels.decrementAndGet();
+    }
+
+    @Override
+    public void dropped(int messages) {
+        droppedMessages.add(messages);
+    }
+
+    @Override
+    public int getUnwritableChannels() {
+        return unwritableChannels.get();
+    }
+
+    @Override
+    public long getDroppedMessages() {
+        return droppedMessages.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "unwritableChannels=" + getUnwritableChannels() + ", droppedMessages=" + getDroppedMessages();
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat04.server.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.ChannelMatchers;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import org.kordamp.javatrove.chat04.Command;
+import org.kordamp.javatrove.chat04.server.ChatBroadcaster;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.io.IOException;
+
+import static org.kordamp.javatrove.chat04.impl.CommandEncoderImpl.writeFrame;
+
+/**
+ * Keeps every connected channel in a single {@link ChannelGroup}, which drops channels
+ * as soon as they are closed. A command is encoded once into a pooled buffer; the group
+ * writes a retained duplicate of that buffer to each member, so recipients share its
+ * bytes instead of encoding the command again.
+ *
+ * @author Andres Almiray
+ */
+public class ChannelGroupBroadcaster implements ChatBroadcaster {
+    private static final Logger LOG = LoggerFactory.getLogger(ChannelGroupBroadcaster.class);
+
+    private final ChannelGroup channels = new DefaultChannelGroup("chat", GlobalEventExecutor.INSTANCE);
+
+    @Inject private ObjectMapper objectMapper;
+
+    @Override
+    public void add(Channel channel) {
+        channels.add(channel);
+    }
+
+    @Override
+    public void remove(Channel channel) {
+        channels.remove(channel);
+    }
+
+    @Override
+    public void broadcast(Command command) {
+        ByteBuf frame = ByteBufAllocator.DEFAULT.ioBuffer();
+        try {
+            writeFrame(objectMapper, command, frame);
+        } catch (IOException e) {
+            frame.release();
+            LOG.error("Could not encode " + command, e);
+            return;
+        }
+        // the group writes frame.retainedDuplicate() to every channel, then releases frame;
+        // void promises spare it from tracking a future per channel
+        channels.writeAndFlush(frame, ChannelMatchers.all(), true);
+    }
+
+    @Override
+    public int size() {
+        return channels.size();
+    }
+}
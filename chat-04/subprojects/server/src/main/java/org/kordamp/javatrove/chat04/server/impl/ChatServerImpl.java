@@ -19,20 +19,31 @@
 package org.kordamp.javatrove.chat04.server.impl;
 
 import io.netty.bootstrap.ServerBootstrap;
-import io.netty.channel.ChannelFuture;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.WriteBufferWaterMark;
 import org.kordamp.javatrove.chat04.ChatChannelInitializer;
 import org.kordamp.javatrove.chat04.ChatUtil;
 import org.kordamp.javatrove.chat04.server.ChatServer;
+import org.kordamp.javatrove.chat04.server.ServerTransport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
+ * Connections are accepted by the boss threads and served by the worker threads, both
+ * counted by configuration. With {@code SO_REUSEPORT} the port is bound once per boss
+ * thread; each bind is a server channel of its own, and the kernel spreads incoming
+ * connections over them instead of queueing them all on a single acceptor.
+ * <p>
+ * A connection stops being writable once more than {@code chat.write.buffer.high} bytes
+ * wait to be sent to it, and becomes writable again below {@code chat.write.buffer.low}.
+ *
  * @author Andres Almiray
  */
 public class ChatServerImpl implements ChatServer {
@@ -42,6 +53,27 @@ public class ChatServerImpl implements ChatServer {
     @Named(ChatUtil.SERVER_PORT_KEY)
     private int port;
 
+    @Inject
+    @Named(ChatUtil.BOSS_THREADS_KEY)
+    private int bossThreads;
+
+    @Inject
+    @Named(ChatUtil.WORKER_THREADS_KEY)
+    private int workerThreads;
+
+    @Inject
+    @Named(ChatUtil.REUSE_PORT_KEY)
+    private boolean reusePort;
+
+    @Inject
+    @Named(ChatUtil.WRITE_BUFFER_LOW_KEY)
+    private int writeBufferLow;
+
+    @Inject
+    @Named(ChatUtil.WRITE_BUFFER_HIGH_KEY)
+    private int writeBufferHigh;
+
+    @Inject private ServerTransport transport;
     @Inject private ChatChannelInitializer channelInitializer;
 
     private EventLoopGroup rootGroup;
@@ -49,16 +81,33 @@ public class ChatServerImpl implements ChatServer {
 
     @Override
     public void start() {
-        rootGroup = new NioEventLoopGroup();
-        workGroup = new NioEventLoopGroup();
+        rootGroup = transport.newEventLoopGroup(bossThreads);
+        workGroup = transport.newEventLoopGroup(workerThreads);
 
         try {
             ServerBootstrap bootstrap = new ServerBootstrap()
                 .group(rootGroup, workGroup)
-                .channel(NioServerSocketChannel.class)
+                .channel(transport.getServerChannelClass())
+                .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(writeBufferLow, writeBufferHigh))
                 .childHandler(channelInitializer);
-            ChannelFuture future = bootstrap.bind(port).sync();
-            future.channel().closeFuture().sync();
+
+            int acceptors = 1;
+            if (reusePort) {
+                if (transport.enableReusePort(bootstrap)) {
+                    acceptors = Math.max(1, bossThreads);
+                } else {
+                    LOG.warn("The " + transport.getName() + " transport does not support SO_REUSEPORT");
+                }
+            }
+
+            List<Channel> channels = new ArrayList<>();
+            for (int i = 0; i < acceptors; i++) {
+                channels.add(bootstrap.bind(port).sync().channel());
+            }
+            LOG.info("Listening on port " + port + " with " + acceptors + " " + transport.getName() + " acceptor(s)");
+            for (Channel channel : channels) {
+                channel.closeFuture().sync();
+            }
         } catch (Exception e) {
             throw new IllegalStateException("Unexpected error", e);
         }
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat04.server.impl;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import org.kordamp.javatrove.chat04.server.ServerTransport;
+
+/**
+ * Linux only. Talks to epoll directly instead of through the JDK selector, which saves
+ * a layer of bookkeeping and garbage per event, and supports {@code SO_REUSEPORT}.
+ *
+ * @author Andres Almiray
+ */
+public class EpollServerTransport implements ServerTransport {
+    @Override
+    public String getName() {
+        return "epoll";
+    }
+
+    @Override
+    public EventLoopGroup newEventLoopGroup(int threads) {
+        return new EpollEventLoopGroup(threads);
+    }
+
+    @Override
+    public Class<? extends ServerChannel> getServerChannelClass() {
+        return EpollServerSocketChannel.class;
+    }
+
+    @Override
+    public boolean enableReusePort(ServerBootstrap bootstrap) {
+        bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+        return true;
+    }
+}
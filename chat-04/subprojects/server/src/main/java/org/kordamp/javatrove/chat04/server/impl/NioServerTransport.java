@@ -0,0 +1,51 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat04.server.impl;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import org.kordamp.javatrove.chat04.server.ServerTransport;
+
+/**
+ * @author Andres Almiray
+ */
+public class NioServerTransport implements ServerTransport {
+    @Override
+    public String getName() {
+        return "nio";
+    }
+
+    @Override
+    public EventLoopGroup newEventLoopGroup(int threads) {
+        return new NioEventLoopGroup(threads);
+    }
+
+    @Override
+    public Class<? extends ServerChannel> getServerChannelClass() {
+        return NioServerSocketChannel.class;
+    }
+
+    @Override
+    public boolean enableReusePort(ServerBootstrap bootstrap) {
+        return false;
+    }
+}
@@ -19,45 +19,157 @@
 package org.kordamp.javatrove.chat04.server.impl;
 
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
 import io.netty.util.ReferenceCountUtil;
 import org.kordamp.javatrove.chat04.ChatHandler;
+import org.kordamp.javatrove.chat04.ChatUtil;
+import org.kordamp.javatrove.chat04.Command;
+import org.kordamp.javatrove.chat04.server.BackpressureMetrics;
+import org.kordamp.javatrove.chat04.server.BackpressurePolicy;
+import org.kordamp.javatrove.chat04.server.ChatBroadcaster;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
 
 /**
+ * Each channel has its own handler; all of them share the {@link ChatBroadcaster}
+ * that relays commands to every connected channel.
+ * <p>
+ * Writes to a channel that is not writable, because its outbound buffer went over the
+ * high water mark, are handled by the configured {@link BackpressurePolicy} instead of
+ * growing the buffer without bound. Queued commands are written, in order, once the
+ * buffer drains below the low water mark. All of this happens on the event loop of the
+ * channel, so the queue needs no synchronization.
+ *
  * @author Andres Almiray
  */
-public class ServerChatHandlerImpl extends ChannelInboundHandlerAdapter implements ChatHandler {
+public class ServerChatHandlerImpl extends ChannelDuplexHandler implements ChatHandler {
     private static final Logger LOG = LoggerFactory.getLogger(ServerChatHandlerImpl.class);
 
-    private final List<Channel> channels = new CopyOnWriteArrayList<>();
+    @Inject
+    @Named(ChatUtil.BACKPRESSURE_KEY)
+    private BackpressurePolicy backpressurePolicy;
+
+    @Inject
+    @Named(ChatUtil.BACKPRESSURE_QUEUE_KEY)
+    private int queueSize;
+
+    @Inject private ChatBroadcaster broadcaster;
+    @Inject private BackpressureMetrics backpressureMetrics;
+
+    private final Queue<PendingWrite> pendingWrites = new ArrayDeque<>();
+    private boolean unwritable;
 
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
         try {
             LOG.info("Publishing " + msg);
-            channels.forEach(channel -> channel.writeAndFlush(msg));
+            broadcaster.broadcast((Command) msg);
         } finally {
             ReferenceCountUtil.release(msg);
         }
     }
 
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (ctx.channel().isWritable() && pendingWrites.isEmpty()) {
+            ctx.write(msg, promise);
+            return;
+        }
+
+        if (backpressurePolicy == BackpressurePolicy.QUEUE && pendingWrites.size() < queueSize) {
+            pendingWrites.add(new PendingWrite(msg, promise));
+        } else {
+            drop(msg, promise);
+        }
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        Channel channel = ctx.channel();
+        if (!channel.isWritable()) {
+            if (!unwritable) {
+                unwritable = true;
+                backpressureMetrics.unwritable();
+                LOG.debug("Channel " + channel.id() + " is not writable");
+            }
+            if (backpressurePolicy == BackpressurePolicy.CLOSE) {
+                LOG.info("Closing channel " + channel.id() + " as it does not keep up");
+                ctx.close();
+            }
+        } else {
+            if (unwritable) {
+                unwritable = false;
+                backpressureMetrics.writable();
+                LOG.debug("Channel " + channel.id() + " is writable");
+            }
+            boolean flush = false;
+            while (channel.isWritable() && !pendingWrites.isEmpty()) {
+                PendingWrite pendingWrite = pendingWrites.poll();
+                ctx.write(pendingWrite.msg, pendingWrite.promise);
+                flush = true;
+            }
+            if (flush) {
+                ctx.flush();
+            }
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        if (cause instanceof IOException) {
+            // the peer went away, typically a connection reset
+            LOG.debug("Closing channel " + ctx.channel().id(), cause);
+        } else {
+            LOG.warn("Closing channel " + ctx.channel().id(), cause);
+        }
+        ctx.close();
+    }
+
     @Override
     public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
         Channel channel = ctx.channel();
         LOG.info("Adding channel " + channel.id());
-        channels.add(channel);
+        broadcaster.add(channel);
     }
 
     @Override
     public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
         Channel channel = ctx.channel();
         LOG.info("Removing channel " + channel.id());
-        channels.remove(channel);
+        broadcaster.remove(channel);
+        for (PendingWrite pendingWrite = pendingWrites.poll(); pendingWrite != null; pendingWrite = pendingWrites.poll()) {
+            drop(pendingWrite.msg, pendingWrite.promise);
+        }
+        if (unwritable) {
+            unwritable = false;
+            backpressureMetrics.writable();
+        }
+    }
+
+    private void drop(Object msg, ChannelPromise promise) {
+        ReferenceCountUtil.release(msg);
+        backpressureMetrics.dropped(1);
+        if (!promise.isVoid()) {
+            promise.tryFailure(new IllegalStateException("Dropped as the channel does not keep up"));
+        }
+    }
+
+    private static class PendingWrite {
+        private final Object msg;
+        private final ChannelPromise promise;
+
+        private PendingWrite(Object msg, ChannelPromise promise) {
+            this.msg = msg;
+            this.promise = promise;
+        }
     }
 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat04.server.impl;
+
+import io.netty.channel.epoll.Epoll;
+import org.kordamp.javatrove.chat04.ChatUtil;
+import org.kordamp.javatrove.chat04.server.ServerTransport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+
+/**
+ * Picks the transport named by {@code chat.transport}: {@code nio}, {@code epoll}, or
+ * {@code auto} for epoll where it is available and NIO elsewhere.
+ *
+ * @author Andres Almiray
+ */
+public class ServerTransportProvider implements Provider<ServerTransport> {
+    private static final Logger LOG = LoggerFactory.getLogger(ServerTransportProvider.class);
+
+    @Inject
+    @Named(ChatUtil.TRANSPORT_KEY)
+    private String transport;
+
+    @Override
+    public ServerTransport get() {
+        switch (transport) {
+            case "nio":
+                return new NioServerTransport();
+            case "epoll":
+                if (!Epoll.isAvailable()) {
+                    throw new IllegalStateException("The epoll transport is not available", Epoll.unavailabilityCause());
+                }
+                return new EpollServerTransport();
+            case "auto":
+                if (Epoll.isAvailable()) {
+                    return new EpollServerTransport();
+                }
+                LOG.info("The epoll transport is not available, using nio instead");
+                return new NioServerTransport();
+            default:
+                throw new IllegalArgumentException("Unsupported transport " + transport);
+        }
+    }
+}
@@ -28,7 +28,32 @@ import static org.kordamp.javatrove.chat04.Command.Type.MESSAGE;
 public class ChatUtil {
     public static final String SERVER_PORT_KEY = "_SERVER_PORT_";
     public static final int SERVER_PORT = 54555;
+    public static final String TRANSPORT_KEY = "_TRANSPORT_";
+    public static final String TRANSPORT_PROPERTY = "chat.transport";
+    public static final String TRANSPORT = "auto";
+    public static final String BOSS_THREADS_KEY = "_BOSS_THREADS_";
+    public static final String BOSS_THREADS_PROPERTY = "chat.boss.threads";
+    public static final int BOSS_THREADS = 1;
+    public static final String WORKER_THREADS_KEY = "_WORKER_THREADS_";
+    public static final String WORKER_THREADS_PROPERTY = "chat.worker.threads";
+    public static final int WORKER_THREADS = 0;
+    public static final String REUSE_PORT_KEY = "_REUSE_PORT_";
+    public static final String REUSE_PORT_PROPERTY = "chat.reuseport";
+    public static final String WRITE_BUFFER_LOW_KEY = "_WRITE_BUFFER_LOW_";
+    public static final String WRITE_BUFFER_LOW_PROPERTY = "chat.write.buffer.low";
+    public static final int WRITE_BUFFER_LOW = 32 * 1024;
+    public static final String WRITE_BUFFER_HIGH_KEY = "_WRITE_BUFFER_HIGH_";
+    public static final String WRITE_BUFFER_HIGH_PROPERTY = "chat.write.buffer.high";
+    public static final int WRITE_BUFFER_HIGH = 64 * 1024;
+    public static final String BACKPRESSURE_KEY = "_BACKPRESSURE_";
+    public static final String BACKPRESSURE_PROPERTY = "chat.backpressure";
+    public static final String BACKPRESSURE = "QUEUE";
+    public static final String BACKPRESSURE_QUEUE_KEY = "_BACKPRESSURE_QUEUE_";
+    public static final String BACKPRESSURE_QUEUE_PROPERTY = "chat.backpressure.queue";
+    public static final int BACKPRESSURE_QUEUE = 1024;
     public static final String NAME_SEPARATOR = ">";
+    public static final int MAX_FRAME_LENGTH = 64 * 1024;
+    public static final int LENGTH_FIELD_LENGTH = 4;
 
     public static Command loginCommand(String name) {
         return Command.builder()
@@ -18,9 +18,10 @@
  */
 package org.kordamp.javatrove.chat04.impl;
 
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelInitializer;
-import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import org.kordamp.javatrove.chat04.ChatChannelInitializer;
 import org.kordamp.javatrove.chat04.ChatHandler;
 import org.kordamp.javatrove.chat04.CommandDecoder;
@@ -29,18 +30,27 @@ import org.kordamp.javatrove.chat04.CommandEncoder;
 import javax.inject.Inject;
 import javax.inject.Provider;
 
+import static org.kordamp.javatrove.chat04.ChatUtil.LENGTH_FIELD_LENGTH;
+import static org.kordamp.javatrove.chat04.ChatUtil.MAX_FRAME_LENGTH;
+
 /**
+ * Every command travels in a frame prefixed by its length in 4 bytes. TCP may split a
+ * command over several reads or coalesce several commands into one; the frame decoder
+ * hands exactly one command to the command decoder either way. The command encoder
+ * writes the length itself, so buffers written to the channel must already be framed.
+ *
  * @author Andres Almiray
  */
 @ChannelHandler.Sharable
-public class ChatChannelInitializerImpl extends ChannelInitializer<SocketChannel> implements ChatChannelInitializer {
+public class ChatChannelInitializerImpl extends ChannelInitializer<Channel> implements ChatChannelInitializer {
     @Inject private Provider<CommandEncoder> commandEncoderProvider;
     @Inject private Provider<CommandDecoder> commandDecoderProvider;
     @Inject private Provider<ChatHandler> chatHandlerProvider;
 
     @Override
-    protected void initChannel(SocketChannel socketChannel) throws Exception {
-        socketChannel.pipeline()
+    protected void initChannel(Channel channel) throws Exception {
+        channel.pipeline()
+            .addLast("frameDecoder", new LengthFieldBasedFrameDecoder(MAX_FRAME_LENGTH, 0, LENGTH_FIELD_LENGTH, 0, LENGTH_FIELD_LENGTH))
             .addLast("decoder", commandDecoderProvider.get())
             .addLast("encoder", commandEncoderProvider.get())
             .addLast("handler", chatHandlerProvider.get());
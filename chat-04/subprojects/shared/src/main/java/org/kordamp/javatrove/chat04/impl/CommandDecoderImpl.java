@@ -18,26 +18,84 @@
  */
 package org.kordamp.javatrove.chat04.impl;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.MessageToMessageDecoder;
 import org.kordamp.javatrove.chat04.Command;
 import org.kordamp.javatrove.chat04.CommandDecoder;
+import org.msgpack.core.MessageFormat;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessageUnpacker;
+import org.msgpack.core.buffer.ArrayBufferInput;
 
-import javax.inject.Inject;
+import java.io.IOException;
 import java.util.List;
 
 /**
+ * Decodes a frame holding one command, as written by the Jackson mapper of
+ * {@link CommandEncoderImpl}. Heap frames are unpacked in place from their backing
+ * array. Direct frames are copied into a scratch array first, as unpacking direct
+ * memory requires reflective access to {@code java.nio}. Each channel has its own
+ * decoder, so the unpacker and the scratch array are reused from one frame to the next.
+ *
  * @author Andres Almiray
  */
-public class CommandDecoderImpl extends ByteToMessageDecoder implements CommandDecoder {
-    @Inject private ObjectMapper objectMapper;
+public class CommandDecoderImpl extends MessageToMessageDecoder<ByteBuf> implements CommandDecoder {
+    private static final Command.Type[] TYPES = Command.Type.values();
+
+    private final ArrayBufferInput input = new ArrayBufferInput(new byte[0]);
+    private final MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(input);
+    private byte[] scratch = new byte[256];
 
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
-        byte[] bytes = new byte[in.readableBytes()];
-        in.readBytes(bytes);
-        out.add(objectMapper.readValue(bytes, Command.class));
+        int length = in.readableBytes();
+        if (in.hasArray()) {
+            input.reset(in.array(), in.arrayOffset() + in.readerIndex(), length);
+        } else {
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            in.getBytes(in.readerIndex(), scratch, 0, length);
+            input.reset(scratch, 0, length);
+        }
+        unpacker.reset(input);
+
+        Command command = new Command();
+        int size = unpacker.unpackMapHeader();
+        for (int i = 0; i < size; i++) {
+            String key = unpacker.unpackString();
+            if (unpacker.getNextFormat() == MessageFormat.NIL) {
+                unpacker.unpackNil();
+                continue;
+            }
+            switch (key) {
+                case "type":
+                    command.setType(unpackType());
+                    break;
+                case "payload":
+                    command.setPayload(unpacker.unpackString());
+                    break;
+                default:
+                    unpacker.skipValue();
+            }
+        }
+        out.add(command);
+    }
+
+    private Command.Type unpackType() throws IOException {
+        if (unpacker.getNextFormat().getValueType().isIntegerType()) {
+            int ordinal = unpacker.unpackInt();
+            if (ordinal < 0 || ordinal >= TYPES.length) {
+                throw new IOException("Unknown command type " + ordinal);
+            }
+            return TYPES[ordinal];
+        }
+        String name = unpacker.unpackString();
+        try {
+            return Command.Type.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown command type " + name, e);
+        }
     }
 }
@@ -20,20 +20,37 @@ package org.kordamp.javatrove.chat04.impl;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
+import org.kordamp.javatrove.chat04.Command;
 import org.kordamp.javatrove.chat04.CommandEncoder;
 
 import javax.inject.Inject;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static org.kordamp.javatrove.chat04.ChatUtil.LENGTH_FIELD_LENGTH;
 
 /**
+ * Encodes a command into a frame, its length followed by the command packed by the
+ * Jackson mapper. Only commands are encoded; buffers are written as they are, so a
+ * frame encoded once may be written to many channels.
+ *
  * @author Andres Almiray
  */
-public class CommandEncoderImpl extends MessageToByteEncoder implements CommandEncoder {
+public class CommandEncoderImpl extends MessageToByteEncoder<Command> implements CommandEncoder {
     @Inject private ObjectMapper objectMapper;
 
     @Override
-    protected void encode(ChannelHandlerContext ctx, Object msg, ByteBuf out) throws Exception {
-        out.writeBytes(objectMapper.writeValueAsBytes(msg));
+    protected void encode(ChannelHandlerContext ctx, Command msg, ByteBuf out) throws Exception {
+        writeFrame(objectMapper, msg, out);
+    }
+
+    public static void writeFrame(ObjectMapper objectMapper, Command command, ByteBuf out) throws IOException {
+        int start = out.writerIndex();
+        out.writeInt(0);
+        objectMapper.writeValue((OutputStream) new ByteBufOutputStream(out), command);
+        out.setInt(start, out.writerIndex() - start - LENGTH_FIELD_LENGTH);
     }
 }
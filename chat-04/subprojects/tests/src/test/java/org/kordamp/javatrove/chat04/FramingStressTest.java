@@ -0,0 +1,195 @@
+/*
+ * Copyright 2016-2020 Andres Almiray
+ *
+ * This file is part of Java Trove Examples
+ *
+ * Java Trove Examples is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Java Trove Examples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Java Trove Examples. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kordamp.javatrove.chat04;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.junit.Test;
+import org.kordamp.javatrove.chat04.impl.ChatChannelInitializerImpl;
+import org.kordamp.javatrove.chat04.impl.CommandDecoderImpl;
+import org.kordamp.javatrove.chat04.impl.CommandEncoderImpl;
+import org.kordamp.javatrove.chat04.impl.ObjectMapperProvider;
+import org.kordamp.javatrove.chat04.server.ChatServer;
+import org.kordamp.javatrove.chat04.server.ServerModule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.inject.name.Names.named;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.kordamp.javatrove.chat04.ChatUtil.messageCommand;
+
+/**
+ * Checks that commands keep their boundaries when TCP splits or coalesces them.
+ *
+ * @author Andres Almiray
+ */
+public class FramingStressTest {
+    private static final int PORT = 54655;
+    private static final int COMMANDS = 10_000;
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void _01_fragmented_and_coalesced_frames_are_decoded_one_command_each() {
+        // given:
+        EmbeddedChannel sender = new EmbeddedChannel();
+        EmbeddedChannel receiver = new EmbeddedChannel();
+        Injector injector = injector(new CommandCollector());
+        sender.pipeline().addLast(injector.getInstance(ChatChannelInitializerImpl.class));
+        receiver.pipeline().addLast(injector.getInstance(ChatChannelInitializerImpl.class));
+        List<Command> commands = commands();
+        commands.forEach(sender::writeOutbound);
+        ByteBuf stream = Unpooled.buffer();
+        for (Object frame = sender.readOutbound(); frame != null; frame = sender.readOutbound()) {
+            stream.writeBytes((ByteBuf) frame);
+            ((ByteBuf) frame).release();
+        }
+
+        // when:
+        while (stream.isReadable()) {
+            int length = Math.min(stream.readableBytes(), 1 + random.nextInt(256));
+            receiver.writeInbound(stream.readRetainedSlice(length));
+        }
+        stream.release();
+
+        // then:
+        CommandCollector collector = (CommandCollector) receiver.pipeline().get("handler");
+        assertEquals(commands.size(), collector.commands.size());
+        for (Command command : commands) {
+            assertEquals(command, collector.commands.poll());
+        }
+    }
+
+    @Test
+    public void _02_pipelined_commands_are_broadcast_back_intact_and_in_order() throws Exception {
+        // given:
+        ChatServer server = Guice.createInjector(new ServerModule() {
+            @Override
+            protected void bindServerPort() {
+                bindConstant()
+                    .annotatedWith(named(ChatUtil.SERVER_PORT_KEY))
+                    .to(PORT);
+            }
+        }).getInstance(ChatServer.class);
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        executorService.submit(server::start);
+
+        CommandCollector collector = new CommandCollector();
+        EventLoopGroup group = new NioEventLoopGroup(1);
+        try {
+            Channel channel = connect(group, injector(collector));
+            List<Command> commands = commands();
+
+            // when:
+            for (int i = 0; i < commands.size(); i++) {
+                channel.write(commands.get(i));
+                if (random.nextInt(16) == 0) {
+                    channel.flush();
+                }
+            }
+            channel.flush();
+
+            // then:
+            for (Command command : commands) {
+                Command received = collector.commands.poll(10, TimeUnit.SECONDS);
+                assertNotNull("timed out waiting for " + command, received);
+                assertEquals(command, received);
+            }
+            channel.close().sync();
+        } finally {
+            group.shutdownGracefully();
+            server.stop();
+            executorService.shutdownNow();
+        }
+    }
+
+    private List<Command> commands() {
+        List<Command> commands = new ArrayList<>();
+        for (int i = 0; i < COMMANDS; i++) {
+            StringBuilder message = new StringBuilder("m").append(i).append(' ');
+            for (int c = random.nextInt(64); c > 0; c--) {
+                message.append((char) ('a' + random.nextInt(26)));
+            }
+            commands.add(messageCommand(message.toString()));
+        }
+        return commands;
+    }
+
+    private Channel connect(EventLoopGroup group, Injector injector) throws InterruptedException {
+        Bootstrap bootstrap = new Bootstrap()
+            .group(group)
+            .channel(NioSocketChannel.class)
+            .handler(injector.getInstance(ChatChannelInitializer.class));
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (true) {
+            try {
+                return bootstrap.connect("localhost", PORT).sync().channel();
+            } catch (Exception e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException("Server did not start", e);
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    private static Injector injector(CommandCollector collector) {
+        return Guice.createInjector(new AbstractModule() {
+            @Override
+            protected void configure() {
+                bind(ChatChannelInitializer.class).to(ChatChannelInitializerImpl.class);
+                bind(CommandEncoder.class).to(CommandEncoderImpl.class);
+                bind(CommandDecoder.class).to(CommandDecoderImpl.class);
+                bind(ChatHandler.class).toInstance(collector);
+                bind(ObjectMapper.class).toProvider(ObjectMapperProvider.class);
+            }
+        });
+    }
+
+    @ChannelHandler.Sharable
+    private static class CommandCollector extends ChannelInboundHandlerAdapter implements ChatHandler {
+        private final BlockingQueue<Command> commands = new LinkedBlockingQueue<>();
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            commands.add((Command) msg);
+        }
+    }
+}